@@ -0,0 +1,33 @@
+package edu.uoc.som.jsonschematouml.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Launches the benchmarks reporting throughput and allocation rate (the latter is provided by the GC 
+ * profiler as gc.alloc.rate and gc.alloc.rate.norm, i.e., bytes allocated per operation). The results are
+ * also written as JSON to outputs/benchmark-results.json to compare them between versions.
+ *
+ * <pre>
+ *   BenchmarkRunner [regexp]
+ * </pre>
+ * 
+ * where the optional regexp selects the benchmarks to run (e.g., LaunchBenchmark).
+ */
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws RunnerException {
+		new java.io.File("outputs").mkdirs();
+		Options options = new OptionsBuilder()
+				.include(args.length > 0 ? args[0] : BenchmarkRunner.class.getPackage().getName() + ".*")
+				.addProfiler(GCProfiler.class)
+				.resultFormat(ResultFormatType.JSON)
+				.result("outputs/benchmark-results.json")
+				.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,84 @@
+package edu.uoc.som.jsonschematouml.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.uoc.som.jsonschematouml.generators.JSONSchemaURI;
+
+/**
+ * Measures the parsing of {@link JSONSchemaURI} and the digest of names, which are done for every 
+ * id and $ref of the schemas. Each invocation processes the whole set of URIs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JSONSchemaURIBenchmark {
+
+	/**
+	 * URIs as found in the ids and $refs of real-world schemas
+	 */
+	private static final String[] URIS = {
+			"https://example.org/models/Entity1/schema.json",
+			"https://example.org/models/common-schema.json#/definitions/Address",
+			"http://json-schema.org/draft-04/schema#",
+			"https://example.org/models/vendor/devices/Device/schema.json#/definitions/Location",
+			"foo://example.com:8042/over/there?name=ferret#nose",
+			"https://example.org/models/common-schema.json#/definitions/GSMA-Commons/properties/id"
+	};
+
+	private JSONSchemaURI[] parsed;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		parsed = new JSONSchemaURI[URIS.length];
+		for(int i = 0; i < URIS.length; i++)
+			parsed[i] = new JSONSchemaURI(URIS[i]);
+	}
+
+	@Benchmark
+	public void parse(Blackhole blackhole) {
+		for(String uri : URIS)
+			blackhole.consume(new JSONSchemaURI(uri));
+	}
+
+	@Benchmark
+	public void digestName(Blackhole blackhole) {
+		for(JSONSchemaURI uri : parsed)
+			blackhole.consume(uri.digestName());
+	}
+
+	@Benchmark
+	public void digestIdName(Blackhole blackhole) {
+		for(JSONSchemaURI uri : parsed)
+			blackhole.consume(uri.digestIdName());
+	}
+
+	@Benchmark
+	public void digestFragmentName(Blackhole blackhole) {
+		for(JSONSchemaURI uri : parsed)
+			blackhole.consume(uri.digestFragmentName());
+	}
+
+	@Benchmark
+	public void parseAndDigest(Blackhole blackhole) {
+		for(String uri : URIS) {
+			JSONSchemaURI jsu = new JSONSchemaURI(uri);
+			blackhole.consume(jsu.getFragment() != null ? jsu.digestFragmentName() : jsu.digestName());
+		}
+	}
+}
@@ -0,0 +1,61 @@
+package edu.uoc.som.jsonschematouml.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.uml2.uml.Model;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.uoc.som.jsonschematouml.generators.JSONSchemaToUML;
+import edu.uoc.som.jsonschematouml.validator.ValidationLevel;
+
+/**
+ * Measures the transformation of a single wide object whose properties are all required
+ * (see {@link SchemaCorpus.Shape#REQUIRED}). The file is not validated, so the time is spent in the analysis.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequiredBenchmark {
+
+	@Param({"1000", "10000"})
+	public int size;
+
+	private File corpus;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		corpus = Files.createTempDirectory("jsonschematouml-required").toFile();
+		SchemaCorpus.generate(corpus, SchemaCorpus.Shape.REQUIRED, 1, size);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		SchemaCorpus.delete(corpus);
+	}
+
+	@Benchmark
+	public Model launch() {
+		JSONSchemaToUML transformer = new JSONSchemaToUML("benchmark");
+		transformer.setValidationLevel(ValidationLevel.NONE);
+		transformer.launch(corpus);
+		return transformer.getModel();
+	}
+}
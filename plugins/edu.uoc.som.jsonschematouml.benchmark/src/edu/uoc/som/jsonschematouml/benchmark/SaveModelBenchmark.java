@@ -0,0 +1,72 @@
+package edu.uoc.som.jsonschematouml.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.uoc.som.jsonschematouml.generators.JSONSchemaToUML;
+import edu.uoc.som.jsonschematouml.generators.ModelFormat;
+
+/**
+ * Measures {@link JSONSchemaToUML#saveModel(File, ModelFormat)} for a model built from a corpus of wide schemas,
+ * in each format. The size of the file written is printed at the end of each trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SaveModelBenchmark {
+
+	@Param({"50"})
+	public int files;
+
+	@Param({"100"})
+	public int size;
+
+	@Param({"XMI", "XMI_GZIP", "XMI_ZIP", "BINARY"})
+	public ModelFormat format;
+
+	private File corpus;
+
+	private File target;
+
+	private JSONSchemaToUML transformer;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		corpus = Files.createTempDirectory("jsonschematouml-save").toFile();
+		SchemaCorpus.generate(new File(corpus, "schemas"), SchemaCorpus.Shape.WIDE, files, size);
+		target = new File(corpus, "model.uml");
+		transformer = new JSONSchemaToUML("benchmark");
+		transformer.launch(new File(corpus, "schemas"));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		System.out.println("Size of the model saved as " + format + ": " + target.length() + " bytes");
+		SchemaCorpus.delete(corpus);
+	}
+
+	@Benchmark
+	public long saveModel() {
+		transformer.saveModel(target, format);
+		return target.length();
+	}
+}
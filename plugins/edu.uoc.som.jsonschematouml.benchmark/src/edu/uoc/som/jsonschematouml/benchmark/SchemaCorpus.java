@@ -0,0 +1,250 @@
+package edu.uoc.som.jsonschematouml.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Generates synthetic corpora of JSON Schema files to be used by the benchmarks. Each corpus stresses
+ * a different part of the transformation according to its {@link Shape}.
+ *
+ * The corpus is written directly as text, so that deeply nested schemas can be generated without recursion.
+ */
+public class SchemaCorpus {
+	/**
+	 * The base of the ids of the generated schemas
+	 */
+	private static final String BASE = "https://example.org/benchmark/";
+
+	/**
+	 * The maximum number of options of a oneOf/anyOf (the transformer names the options with letters)
+	 */
+	private static final int MAX_OPTIONS = 25;
+
+	/**
+	 * The length of the chains of definitions of the {@link Shape#LIBRARY} corpora
+	 */
+	static final int CHAIN = 10;
+
+	/**
+	 * The shape of the generated schemas
+	 */
+	public enum Shape {
+		/**
+		 * One object with size properties of primitive types (with constraints)
+		 */
+		WIDE,
+		/**
+		 * Inline objects nested size levels
+		 */
+		DEEP,
+		/**
+		 * A definitions library with size entries, and schemas referring to them through $ref
+		 */
+		REFS,
+		/**
+		 * size properties, each one being a oneOf of inline options
+		 */
+		ONE_OF,
+		/**
+		 * size properties, each one being an anyOf of inline options
+		 */
+		ANY_OF,
+		/**
+		 * Properties with enumerations of size literals
+		 */
+		ENUM,
+		/**
+		 * One object with size properties of primitive types, all of them required
+		 */
+		REQUIRED,
+		/**
+		 * A definitions library with size entries (in chains of {@link SchemaCorpus#CHAIN} definitions referring to the
+		 * next one), and schemas referring to the head of a chain each, so most of the library is never reached
+		 */
+		LIBRARY
+	}
+
+	/**
+	 * Generates a corpus
+	 *
+	 * @param folder The folder where the schemas are written
+	 * @param shape The shape of the schemas
+	 * @param files The number of schemas to generate
+	 * @param size The size of each schema (its meaning depends on the shape)
+	 * @throws IOException
+	 */
+	public static void generate(File folder, Shape shape, int files, int size) throws IOException {
+		folder.mkdirs();
+		if(shape == Shape.REFS)
+			write(new File(folder, "common.json"), definitions(size));
+		if(shape == Shape.LIBRARY)
+			write(new File(folder, "common.json"), library(size));
+		for(int i = 0; i < files; i++) {
+			String name = "Entity" + i;
+			StringBuilder sb = new StringBuilder();
+			sb.append("{\"$schema\": \"http://json-schema.org/draft-04/schema#\",\n");
+			sb.append(" \"id\": \"").append(BASE).append(name).append("/schema.json\",\n");
+			sb.append(" \"title\": \"").append(name).append("\",\n");
+			sb.append(" \"type\": \"object\",\n");
+			switch(shape) {
+			case WIDE: wide(sb, size); break;
+			case DEEP: deep(sb, size); break;
+			case REFS: refs(sb, i, size); break;
+			case ONE_OF: options(sb, "oneOf", size); break;
+			case ANY_OF: options(sb, "anyOf", size); break;
+			case ENUM: enums(sb, size); break;
+			case REQUIRED: required(sb, size); break;
+			case LIBRARY: library(sb, i, size); break;
+			}
+			sb.append("}\n");
+			write(new File(folder, name + ".json"), sb);
+		}
+	}
+
+	private static void wide(StringBuilder sb, int size) {
+		sb.append(" \"properties\": {\n");
+		for(int j = 0; j < size; j++) {
+			sb.append("  \"att").append(j).append("\": ").append(primitive(j));
+			sb.append(j < size - 1 ? ",\n" : "\n");
+		}
+		sb.append(" },\n \"required\": [\"att0\", \"att").append(size - 1).append("\"]\n");
+	}
+
+	private static void required(StringBuilder sb, int size) {
+		sb.append(" \"properties\": {\n");
+		for(int j = 0; j < size; j++) {
+			sb.append("  \"att").append(j).append("\": ").append(primitive(j));
+			sb.append(j < size - 1 ? ",\n" : "\n");
+		}
+		sb.append(" },\n \"required\": [");
+		for(int j = 0; j < size; j++) {
+			sb.append("\"att").append(j).append("\"");
+			sb.append(j < size - 1 ? ", " : "");
+		}
+		sb.append("]\n");
+	}
+
+	private static void deep(StringBuilder sb, int size) {
+		sb.append(" \"properties\": {");
+		for(int j = 0; j < size; j++)
+			sb.append("\"level").append(j).append("\": {\"type\": \"object\", \"properties\": {");
+		sb.append("\"leaf\": {\"type\": \"string\"}");
+		for(int j = 0; j < size; j++)
+			sb.append("}}");
+		sb.append("}\n");
+	}
+
+	private static void refs(StringBuilder sb, int file, int size) {
+		sb.append(" \"allOf\": [\n  {\"$ref\": \"").append(BASE).append("common.json#/definitions/Def").append(file % size).append("\"},\n");
+		sb.append("  {\"properties\": {\n");
+		for(int j = 0; j < size; j++) {
+			sb.append("   \"ref").append(j).append("\": ");
+			if(j % 2 == 0)
+				sb.append("{\"$ref\": \"").append(BASE).append("common.json#/definitions/Def").append(j).append("\"}");
+			else
+				sb.append("{\"type\": \"array\", \"items\": {\"$ref\": \"").append(BASE).append("common.json#/definitions/Def").append(j).append("\"}}");
+			sb.append(j < size - 1 ? ",\n" : "\n");
+		}
+		sb.append("  }}\n ]\n");
+	}
+
+	private static void library(StringBuilder sb, int file, int size) {
+		sb.append(" \"properties\": {\n");
+		sb.append("  \"name\": {\"type\": \"string\"},\n");
+		sb.append("  \"head\": {\"$ref\": \"").append(BASE).append("common.json#/definitions/Def").append((file * CHAIN) % size).append("\"}\n");
+		sb.append(" }\n");
+	}
+
+	private static void options(StringBuilder sb, String keyword, int size) {
+		sb.append(" \"properties\": {\n");
+		for(int j = 0; j < size; j++) {
+			sb.append("  \"choice").append(j).append("\": {\"").append(keyword).append("\": [");
+			int options = Math.min(MAX_OPTIONS, 2 + j % MAX_OPTIONS);
+			for(int k = 0; k < options; k++) {
+				sb.append(primitive(k));
+				sb.append(k < options - 1 ? ", " : "");
+			}
+			sb.append("]}");
+			sb.append(j < size - 1 ? ",\n" : "\n");
+		}
+		sb.append(" }\n");
+	}
+
+	private static void enums(StringBuilder sb, int size) {
+		sb.append(" \"properties\": {\n");
+		for(int j = 0; j < 10; j++) {
+			sb.append("  \"enum").append(j).append("\": {\"type\": \"string\", \"enum\": [");
+			for(int k = 0; k < size; k++) {
+				sb.append("\"literal").append(k).append("\"");
+				sb.append(k < size - 1 ? ", " : "");
+			}
+			sb.append("]}");
+			sb.append(j < 9 ? ",\n" : "\n");
+		}
+		sb.append(" }\n");
+	}
+
+	private static StringBuilder definitions(int size) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\"$schema\": \"http://json-schema.org/draft-04/schema#\",\n");
+		sb.append(" \"id\": \"").append(BASE).append("common.json\",\n");
+		sb.append(" \"definitions\": {\n");
+		for(int j = 0; j < size; j++) {
+			sb.append("  \"Def").append(j).append("\": {\"type\": \"object\", \"properties\": {");
+			sb.append("\"name\": {\"type\": \"string\"}, \"value\": {\"type\": \"integer\", \"minimum\": 0}}}");
+			sb.append(j < size - 1 ? ",\n" : "\n");
+		}
+		sb.append(" }\n}\n");
+		return sb;
+	}
+
+	private static StringBuilder library(int size) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\"$schema\": \"http://json-schema.org/draft-04/schema#\",\n");
+		sb.append(" \"id\": \"").append(BASE).append("common.json\",\n");
+		sb.append(" \"definitions\": {\n");
+		for(int j = 0; j < size; j++) {
+			sb.append("  \"Def").append(j).append("\": {\"type\": \"object\", \"properties\": {");
+			sb.append("\"name\": {\"type\": \"string\", \"maxLength\": 20}, \"value\": {\"type\": \"integer\", \"minimum\": 0}");
+			if(j % CHAIN != CHAIN - 1 && j < size - 1)
+				sb.append(", \"next\": {\"$ref\": \"#/definitions/Def").append(j + 1).append("\"}");
+			sb.append("}}");
+			sb.append(j < size - 1 ? ",\n" : "\n");
+		}
+		sb.append(" }\n}\n");
+		return sb;
+	}
+
+	private static String primitive(int index) {
+		switch(index % 5) {
+		case 0: return "{\"type\": \"string\", \"maxLength\": 20, \"minLength\": 1}";
+		case 1: return "{\"type\": \"integer\", \"minimum\": 0, \"maximum\": 100}";
+		case 2: return "{\"type\": \"number\", \"multipleOf\": 2}";
+		case 3: return "{\"type\": \"boolean\"}";
+		default: return "{\"type\": \"string\", \"format\": \"date-time\"}";
+		}
+	}
+
+	private static void write(File file, CharSequence contents) throws IOException {
+		try(Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+			writer.append(contents);
+		}
+	}
+
+	/**
+	 * Deletes a folder (and its contents)
+	 *
+	 * @param file The folder to delete
+	 */
+	public static void delete(File file) {
+		File[] children = file.listFiles();
+		if(children != null)
+			for(File child : children)
+				delete(child);
+		file.delete();
+	}
+}
@@ -0,0 +1,81 @@
+package edu.uoc.som.jsonschematouml.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.fge.jackson.JsonLoader;
+import com.github.fge.jsonschema.core.exceptions.ProcessingException;
+import com.github.fge.jsonschema.core.report.ProcessingReport;
+
+import edu.uoc.som.jsonschematouml.validator.JSONSchemaValidator;
+import edu.uoc.som.jsonschematouml.validator.ValidationLevel;
+
+/**
+ * Measures {@link JSONSchemaValidator} on a single schema, both from an already loaded tree and from the file,
+ * and the {@link ValidationLevel#STRUCTURAL} check on the tree.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValidatorBenchmark {
+
+	@Param({"WIDE", "DEEP", "ONE_OF", "ENUM"})
+	public SchemaCorpus.Shape shape;
+
+	@Param({"100"})
+	public int size;
+
+	private File corpus;
+
+	private File schema;
+
+	private JsonNode tree;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		corpus = Files.createTempDirectory("jsonschematouml-validator").toFile();
+		SchemaCorpus.generate(corpus, shape, 1, size);
+		schema = new File(corpus, "Entity0.json");
+		tree = JsonLoader.fromFile(schema);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		SchemaCorpus.delete(corpus);
+	}
+
+	@Benchmark
+	public ProcessingReport validateTree() throws ProcessingException {
+		return JSONSchemaValidator.validate(tree);
+	}
+
+	@Benchmark
+	public ProcessingReport validateFile() throws ProcessingException, IOException {
+		return JSONSchemaValidator.validate(schema);
+	}
+
+	@Benchmark
+	public boolean validateStructural() throws ProcessingException {
+		return JSONSchemaValidator.isValid(tree, ValidationLevel.STRUCTURAL);
+	}
+}
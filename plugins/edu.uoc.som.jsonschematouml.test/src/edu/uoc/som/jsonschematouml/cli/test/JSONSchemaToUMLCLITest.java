@@ -0,0 +1,49 @@
+package edu.uoc.som.jsonschematouml.cli.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import edu.uoc.som.jsonschematouml.cli.JSONSchemaToUMLCLI;
+import edu.uoc.som.jsonschematouml.generators.JSONSchemaToUML;
+import junit.framework.TestCase;
+
+public class JSONSchemaToUMLCLITest extends TestCase {
+
+    @Test
+    public void testRun() throws IOException {
+        File outputFolder = new File("outputs/cli");
+        new File(outputFolder, "testSet.uml").delete();
+        new File(outputFolder, "testArray.uml").delete();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrintStream err = new PrintStream(new ByteArrayOutputStream());
+
+        int code = JSONSchemaToUMLCLI.run(new String[] { "-o", outputFolder.getPath(), "-t", "2", "inputs/testSet", "inputs/testArray.json" }, new PrintStream(out), err);
+        assertEquals(0, code);
+        assertTrue(out.toString().contains("2 input(s), 0 failed"));
+
+        // Models are the same as the ones created with the API
+        JSONSchemaToUML generator = new JSONSchemaToUML("testSet");
+        generator.launch(new File("inputs/testSet"));
+        generator.saveModel(new File("outputs/testSet.uml"));
+        assertTrue(Arrays.equals(Files.readAllBytes(new File("outputs/testSet.uml").toPath()),
+                Files.readAllBytes(new File(outputFolder, "testSet.uml").toPath())));
+        assertTrue(new File(outputFolder, "testArray.uml").isFile());
+    }
+
+    @Test
+    public void testWrongArguments() {
+        PrintStream out = new PrintStream(new ByteArrayOutputStream());
+        PrintStream err = new PrintStream(new ByteArrayOutputStream());
+        assertEquals(2, JSONSchemaToUMLCLI.run(new String[] { "--unknown", "inputs/testSet" }, out, err));
+        assertEquals(2, JSONSchemaToUMLCLI.run(new String[] { "-t", "0", "inputs/testSet" }, out, err));
+        assertEquals(2, JSONSchemaToUMLCLI.run(new String[] { "inputs/missing" }, out, err));
+        assertEquals(2, JSONSchemaToUMLCLI.run(new String[] { "inputs/testSet", "outputs/../inputs/testSet" }, out, err));
+        assertEquals(0, JSONSchemaToUMLCLI.run(new String[] { "--help" }, out, err));
+    }
+}
@@ -3,11 +3,49 @@ package edu.uoc.som.jsonschematouml.generators.test;
 import junit.framework.TestCase;
 import org.eclipse.uml2.uml.*;
 import org.eclipse.uml2.uml.Class;
+import org.eclipse.uml2.uml.Package;
+import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.BinaryResourceImpl;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.uml2.uml.resource.UMLResource;
 import org.junit.Test;
 
 import edu.uoc.som.jsonschematouml.generators.JSONSchemaToUML;
+import edu.uoc.som.jsonschematouml.generators.JSONSchemaToUMLException;
+import edu.uoc.som.jsonschematouml.generators.JSONSchemaWatcher;
+import edu.uoc.som.jsonschematouml.generators.MetricsListener;
+import edu.uoc.som.jsonschematouml.generators.ModelFormat;
+import edu.uoc.som.jsonschematouml.generators.TransformationMetrics;
+import edu.uoc.som.jsonschematouml.generators.TransformationMetrics.Counter;
+import edu.uoc.som.jsonschematouml.generators.TransformationMetrics.Phase;
+import edu.uoc.som.jsonschematouml.generators.UMLElementFactory;
+import edu.uoc.som.jsonschematouml.validator.ValidationCache;
+import edu.uoc.som.jsonschematouml.validator.ValidationLevel;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
 
 public class JSONSchemaToUMLTest extends TestCase {
     
@@ -119,6 +157,35 @@ public class JSONSchemaToUMLTest extends TestCase {
         }
     }
     
+    @Test
+    public void testRequired() throws IOException {
+        File input = new File("outputs/required.json");
+        Files.write(input.toPath(), ("{\"id\": \"http://example.org/requiredInstance/schema.json\", \"type\": \"object\", \"allOf\": ["
+                + "{\"properties\": {"
+                + "\"address\": {\"type\": \"object\", \"properties\": {\"street\": {\"type\": \"string\"}}},"
+                + "\"other\": {\"type\": \"object\", \"properties\": {\"street\": {\"type\": \"string\"}}},"
+                + "\"tags\": {\"type\": \"array\", \"minItems\": 0, \"maxItems\": 5, \"items\": {\"type\": \"string\"}},"
+                + "\"code\": {\"type\": \"array\", \"minItems\": 0, \"maxItems\": 5, \"items\": {\"type\": \"string\"}}}},"
+                + "{\"properties\": {\"code\": {\"type\": \"object\", \"properties\": {\"value\": {\"type\": \"string\"}}}}}],"
+                + "\"required\": [\"address\", \"tags\", \"code\", \"missing\"]"
+                + "}").getBytes(StandardCharsets.UTF_8));
+
+        JSONSchemaToUML io = new JSONSchemaToUML("test");
+        io.launch(input);
+        Model model = io.getModel();
+
+        Class c = (Class) model.getNestedPackage("test").getPackagedElement("RequiredInstance");
+        assertNotNull(c);
+        assertEquals(1, c.getOwnedAttribute("address", null).getLower());
+        assertEquals(0, c.getOwnedAttribute("other", null).getLower());
+        assertEquals(0, c.getOwnedAttribute("tags", null).getLower());
+        // Only the single-valued attribute among the ones sharing the name is required
+        for(Property property : c.getOwnedAttributes()) {
+            if(property.getName().equals("code"))
+                assertEquals(property.getUpper() == 1 ? 1 : 0, property.getLower());
+        }
+    }
+
     @Test
     public void testTitleDescription() {
     	JSONSchemaToUML io = new JSONSchemaToUML("test");
@@ -155,4 +222,707 @@ public class JSONSchemaToUMLTest extends TestCase {
         io.launch(input);
         io.saveModel(new File("outputs/model.uml"));
     }
+
+    @Test
+    public void testParallel() throws IOException {
+        JSONSchemaToUML sequential = new JSONSchemaToUML("test");
+        sequential.launch(new File("inputs/testSet"));
+        sequential.saveModel(new File("outputs/sequential.uml"));
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            JSONSchemaToUML parallel = new JSONSchemaToUML("test");
+            parallel.setExecutor(pool);
+            parallel.launch(new File("inputs/testSet"));
+            parallel.saveModel(new File("outputs/parallel.uml"));
+        } finally {
+            pool.shutdown();
+        }
+
+        assertTrue(Arrays.equals(Files.readAllBytes(new File("outputs/sequential.uml").toPath()), 
+                Files.readAllBytes(new File("outputs/parallel.uml").toPath())));
+    }
+
+    @Test
+    public void testStreaming() throws IOException {
+        JSONSchemaToUML tree = new JSONSchemaToUML("test");
+        tree.launch(new File("inputs/testSet"));
+
+        JSONSchemaToUML streaming = new JSONSchemaToUML("test");
+        streaming.setStreamingThreshold(0);
+        streaming.launch(new File("inputs/testSet"));
+
+        // In streaming mode the definitions are created first, so we only compare the elements created
+        assertEquals(qualifiedNames(tree.getModel()), qualifiedNames(streaming.getModel()));
+
+        // The entries of the cache stored in one mode are not used in the other (the definitions are created first)
+        File inputFolder = new File("outputs/streaming");
+        File cacheFolder = new File("outputs/streamingCache");
+        deleteAll(inputFolder);
+        deleteAll(cacheFolder);
+        inputFolder.mkdirs();
+        Files.write(new File(inputFolder, "root.json").toPath(), ("{\"type\": \"object\", \"properties\": {\"a\": {\"$ref\": \"#/definitions/A\"}}, "
+                + "\"definitions\": {\"A\": {\"type\": \"object\", \"properties\": {\"x\": {\"type\": \"string\"}}}}}").getBytes(StandardCharsets.UTF_8));
+        streaming = new JSONSchemaToUML("test");
+        streaming.setStreamingThreshold(0);
+        streaming.launch(inputFolder);
+        streaming.saveModel(new File("outputs/streaming.uml"));
+        JSONSchemaToUML cachedTree = new JSONSchemaToUML("test");
+        cachedTree.setCacheFolder(cacheFolder);
+        cachedTree.launch(inputFolder);
+        JSONSchemaToUML cachedStreaming = new JSONSchemaToUML("test");
+        cachedStreaming.setCacheFolder(cacheFolder);
+        cachedStreaming.setStreamingThreshold(0);
+        cachedStreaming.launch(inputFolder);
+        cachedStreaming.saveModel(new File("outputs/cachedStreaming.uml"));
+        assertTrue(Arrays.equals(Files.readAllBytes(new File("outputs/streaming.uml").toPath()),
+                Files.readAllBytes(new File("outputs/cachedStreaming.uml").toPath())));
+    }
+
+    @Test
+    public void testIncremental() throws IOException {
+        File cacheFolder = new File("outputs/cache");
+        File inputFolder = new File("outputs/incremental");
+        deleteAll(cacheFolder);
+        deleteAll(inputFolder);
+        inputFolder.mkdirs();
+        File input = new File(inputFolder, "titleDescription.json");
+        String schema = new String(Files.readAllBytes(new File("inputs/testTitleDescription.json").toPath()), StandardCharsets.UTF_8);
+        Files.write(input.toPath(), schema.getBytes(StandardCharsets.UTF_8));
+        Files.copy(new File("inputs/testArray.json").toPath(), new File(inputFolder, "array.json").toPath());
+
+        JSONSchemaToUML full = new JSONSchemaToUML("test");
+        full.launch(inputFolder);
+        full.saveModel(new File("outputs/full.uml"));
+
+        // The first launch fills the cache, the second one loads every file from it
+        for(int i = 0; i < 2; i++) {
+            JSONSchemaToUML incremental = new JSONSchemaToUML("test");
+            incremental.setCacheFolder(cacheFolder);
+            incremental.launch(inputFolder);
+            incremental.saveModel(new File("outputs/incremental.uml"));
+            assertTrue(Arrays.equals(Files.readAllBytes(new File("outputs/full.uml").toPath()), 
+                    Files.readAllBytes(new File("outputs/incremental.uml").toPath())));
+        }
+
+        // Changed files are analyzed again
+        Files.write(input.toPath(), schema.replace("titleTest", "changedTitle").getBytes(StandardCharsets.UTF_8));
+        JSONSchemaToUML incremental = new JSONSchemaToUML("test");
+        incremental.setCacheFolder(cacheFolder);
+        incremental.launch(inputFolder);
+        Class c = (Class) incremental.getModel().getNestedPackage("test").getNestedPackage("incremental").getPackagedElement("TitleDescription");
+        assertNotNull(c);
+        assertEquals("Title: changedTitle", c.getOwnedComments().get(0).getBody());
+
+        // The entries stored with a validation level are not used with another one
+        File invalid = new File(inputFolder, "invalid.json");
+        Files.write(invalid.toPath(), ("{\"type\": \"object\", \"properties\": {\"name\": {\"type\": \"string\", \"maxLength\": -1}}}").getBytes(StandardCharsets.UTF_8));
+        incremental = new JSONSchemaToUML("test");
+        incremental.setCacheFolder(cacheFolder);
+        incremental.setValidationLevel(ValidationLevel.NONE);
+        incremental.launch(inputFolder);
+        assertNotNull(incremental.getModel().getNestedPackage("test").getNestedPackage("incremental").getPackagedElement("Invalid"));
+        TransformationMetrics metrics = new TransformationMetrics();
+        incremental = new JSONSchemaToUML("test");
+        incremental.setCacheFolder(cacheFolder);
+        incremental.setMetrics(metrics);
+        incremental.launch(inputFolder);
+        assertNull(incremental.getModel().getNestedPackage("test").getNestedPackage("incremental").getPackagedElement("Invalid"));
+        assertEquals(1, metrics.getCount(Counter.INVALID_FILES));
+    }
+
+    @Test
+    public void testReferences() throws IOException {
+        File inputFolder = new File("outputs/references");
+        deleteAll(inputFolder);
+        inputFolder.mkdirs();
+        // Both files define "Item", references must be resolved to the right one
+        Files.write(new File(inputFolder, "a.json").toPath(), ("{\"definitions\": {"
+                + "\"Item\": {\"type\": \"object\", \"properties\": {\"x\": {\"type\": \"string\"}}},"
+                + "\"Tag\": {\"id\": \"http://example.org/tag.json\", \"type\": \"object\", \"properties\": {\"z\": {\"type\": \"string\"}}}"
+                + "}}").getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(inputFolder, "b.json").toPath(), ("{\"type\": \"object\", \"properties\": {"
+                + "\"item\": {\"$ref\": \"#/definitions/Item\"},"
+                + "\"other\": {\"$ref\": \"a.json#/definitions/Item\"},"
+                + "\"tag\": {\"$ref\": \"http://example.org/tag.json\"}},"
+                + "\"definitions\": {\"Item\": {\"type\": \"object\", \"properties\": {\"y\": {\"type\": \"integer\"}}}}"
+                + "}").getBytes(StandardCharsets.UTF_8));
+
+        JSONSchemaToUML io = new JSONSchemaToUML("test");
+        io.launch(inputFolder);
+        Class b = (Class) io.getModel().getNestedPackage("test").getNestedPackage("references").getPackagedElement("B");
+        assertNotNull(b);
+        Class item = (Class) b.getOwnedAttribute("item", null).getType();
+        Class other = (Class) b.getOwnedAttribute("other", null).getType();
+        Class tag = (Class) b.getOwnedAttribute("tag", null).getType();
+        assertNotNull(item.getOwnedAttribute("y", null));
+        assertNotNull(other.getOwnedAttribute("x", null));
+        assertNotNull(tag.getOwnedAttribute("z", null));
+    }
+
+    @Test
+    public void testStructuralDeduplication() throws IOException {
+        File inputFolder = new File("outputs/deduplication");
+        deleteAll(inputFolder);
+        inputFolder.mkdirs();
+        // The same inline object (with members in different order) and enumeration in both files
+        Files.write(new File(inputFolder, "a.json").toPath(), ("{\"type\": \"object\", \"properties\": {"
+                + "\"address\": {\"type\": \"object\", \"properties\": {\"street\": {\"type\": \"string\"}, \"kind\": {\"type\": \"string\", \"enum\": [\"home\", \"work\"]}}},"
+                + "\"billing\": {\"properties\": {\"kind\": {\"enum\": [\"home\", \"work\"], \"type\": \"string\"}, \"street\": {\"type\": \"string\"}}, \"type\": \"object\"}"
+                + "}}").getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(inputFolder, "b.json").toPath(), ("{\"type\": \"object\", \"properties\": {"
+                + "\"shipping\": {\"type\": \"object\", \"properties\": {\"street\": {\"type\": \"string\"}, \"kind\": {\"type\": \"string\", \"enum\": [\"home\", \"work\"]}}},"
+                + "\"other\": {\"type\": \"object\", \"properties\": {\"street\": {\"type\": \"integer\"}}},"
+                + "\"status\": {\"type\": \"string\", \"enum\": [\"home\", \"work\"]}"
+                + "}}").getBytes(StandardCharsets.UTF_8));
+
+        JSONSchemaToUML io = new JSONSchemaToUML("test");
+        io.setStructuralDeduplication(true);
+        io.launch(inputFolder);
+        Package folder = io.getModel().getNestedPackage("test").getNestedPackage("deduplication");
+        Class a = (Class) folder.getPackagedElement("A");
+        Class b = (Class) folder.getPackagedElement("B");
+        Type address = a.getOwnedAttribute("address", null).getType();
+        assertEquals("Address", address.getName());
+        assertSame(address, a.getOwnedAttribute("billing", null).getType());
+        assertSame(address, b.getOwnedAttribute("shipping", null).getType());
+        assertNotSame(address, b.getOwnedAttribute("other", null).getType());
+        assertSame(((Class) address).getOwnedAttribute("kind", null).getType(), b.getOwnedAttribute("status", null).getType());
+        assertNull(folder.getPackagedElement("Billing"));
+        assertNull(folder.getPackagedElement("Shipping"));
+        io.saveModel(new File("outputs/deduplication.uml"));
+
+        // The same model is created when the files are analyzed in parallel
+        JSONSchemaToUML parallel = new JSONSchemaToUML("test");
+        parallel.setStructuralDeduplication(true);
+        parallel.setExecutor(new ForkJoinPool(2));
+        parallel.launch(inputFolder);
+        parallel.saveModel(new File("outputs/deduplicationParallel.uml"));
+        assertTrue(Arrays.equals(Files.readAllBytes(new File("outputs/deduplication.uml").toPath()),
+                Files.readAllBytes(new File("outputs/deduplicationParallel.uml").toPath())));
+
+        // Disabled by default
+        JSONSchemaToUML duplicated = new JSONSchemaToUML("test");
+        duplicated.launch(inputFolder);
+        folder = duplicated.getModel().getNestedPackage("test").getNestedPackage("deduplication");
+        assertNotNull(folder.getPackagedElement("Billing"));
+        assertNotNull(folder.getPackagedElement("Shipping"));
+    }
+
+    @Test
+    public void testValidationCache() throws IOException {
+        File cacheFile = new File("outputs/validation.json");
+        cacheFile.delete();
+
+        JSONSchemaToUML full = new JSONSchemaToUML("test");
+        full.launch(new File("inputs/testSet"));
+        full.saveModel(new File("outputs/full.uml"));
+
+        // The first launch fills the cache, the second one takes every result from it
+        for(int i = 0; i < 2; i++) {
+            JSONSchemaToUML cached = new JSONSchemaToUML("test");
+            cached.setValidationCache(new ValidationCache(cacheFile));
+            cached.launch(new File("inputs/testSet"));
+            cached.saveModel(new File("outputs/cached.uml"));
+            assertTrue(Arrays.equals(Files.readAllBytes(new File("outputs/full.uml").toPath()), 
+                    Files.readAllBytes(new File("outputs/cached.uml").toPath())));
+        }
+        assertEquals(new File("inputs/testSet").listFiles().length, new ValidationCache(cacheFile).size());
+
+        // The least recently used entries are evicted
+        ValidationCache small = new ValidationCache(new File("outputs/small.json"), 2);
+        small.put("a", true);
+        small.put("b", false);
+        small.get("a");
+        small.put("c", true);
+        assertEquals(Boolean.TRUE, small.get("a"));
+        assertNull(small.get("b"));
+        assertEquals(Boolean.TRUE, small.get("c"));
+
+        // The order of eviction is kept between runs, even if they only hit the cache
+        File orderFile = new File("outputs/order.json");
+        orderFile.delete();
+        ValidationCache first = new ValidationCache(orderFile, 2);
+        first.put("a", true);
+        first.put("b", true);
+        first.save();
+        ValidationCache second = new ValidationCache(orderFile, 2);
+        assertEquals(Boolean.TRUE, second.get("a"));
+        second.save();
+        ValidationCache third = new ValidationCache(orderFile, 2);
+        third.put("c", true);
+        assertEquals(Boolean.TRUE, third.get("a"));
+        assertNull(third.get("b"));
+    }
+
+    @Test
+    public void testSaveFormats() throws IOException {
+        JSONSchemaToUML io = new JSONSchemaToUML("test");
+        io.launch(new File("inputs/testSet"));
+        io.saveModel(new File("outputs/formats.uml"), ModelFormat.XMI);
+        io.saveModel(new File("outputs/formats.uml.gz"), ModelFormat.XMI_GZIP);
+        io.saveModel(new File("outputs/formats.zip"), ModelFormat.XMI_ZIP);
+        io.saveModel(new File("outputs/formats.bin"), ModelFormat.BINARY);
+        byte[] xmi = Files.readAllBytes(new File("outputs/formats.uml").toPath());
+        Set<String> names = qualifiedNames(io.getModel());
+
+        // The compressed XMI is the same XMI
+        try (InputStream input = new GZIPInputStream(new FileInputStream("outputs/formats.uml.gz"))) {
+            ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while((read = input.read(buffer)) > 0)
+                decompressed.write(buffer, 0, read);
+            assertTrue(Arrays.equals(xmi, decompressed.toByteArray()));
+        }
+
+        // The zipped XMI and the binary resource load the same model
+        ResourceSet resourceSet = new ResourceSetImpl();
+        resourceSet.getPackageRegistry().put(UMLPackage.eNS_URI, UMLPackage.eINSTANCE);
+        Resource zipped = UMLResource.Factory.INSTANCE.createResource(URI.createFileURI(new File("outputs/formats.zip").getAbsolutePath()));
+        resourceSet.getResources().add(zipped);
+        zipped.load(Collections.singletonMap(Resource.OPTION_ZIP, Boolean.TRUE));
+        assertEquals(names, qualifiedNames((Model) zipped.getContents().get(0)));
+        Resource binary = new BinaryResourceImpl(URI.createFileURI(new File("outputs/formats.bin").getAbsolutePath()));
+        resourceSet.getResources().add(binary);
+        binary.load(null);
+        assertEquals(names, qualifiedNames((Model) binary.getContents().get(0)));
+
+        // Saving again (with the lookup table of the previous saves) writes the same XMI
+        io.saveModel(new File("outputs/formatsAgain.uml"), ModelFormat.XMI);
+        assertTrue(Arrays.equals(xmi, Files.readAllBytes(new File("outputs/formatsAgain.uml").toPath())));
+
+        // The errors are reported
+        try {
+            io.saveModel(new File("outputs/formats.uml/model.uml"), ModelFormat.XMI);
+            fail();
+        } catch (JSONSchemaToUMLException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void testSaveModelByPackage() throws IOException {
+        JSONSchemaToUML io = new JSONSchemaToUML("test");
+        io.launch(new File("inputs"));
+        io.saveModelByPackage(new File("outputs/byPackage.uml"), ModelFormat.XMI);
+        assertTrue(new File("outputs/byPackage/inputs.uml").isFile());
+        assertTrue(new File("outputs/byPackage/inputs/testSet.uml").isFile());
+
+        // Packages are loaded on demand
+        ResourceSet resourceSet = new ResourceSetImpl();
+        resourceSet.getPackageRegistry().put(UMLPackage.eNS_URI, UMLPackage.eINSTANCE);
+        resourceSet.getResourceFactoryRegistry().getExtensionToFactoryMap().put(UMLResource.FILE_EXTENSION, UMLResource.Factory.INSTANCE);
+        Resource resource = resourceSet.getResource(URI.createFileURI(new File("outputs/byPackage.uml").getAbsolutePath()), true);
+        assertEquals(1, resourceSet.getResources().size());
+        Model model = (Model) resource.getContents().get(0);
+        assertEquals(qualifiedNames(io.getModel()), qualifiedNames(model));
+        assertEquals(3, resourceSet.getResources().size());
+        EcoreUtil.resolveAll(resourceSet);
+        assertTrue(EcoreUtil.UnresolvedProxyCrossReferencer.find(resourceSet).isEmpty());
+
+        // The model can still be saved as a whole
+        io.saveModel(new File("outputs/byPackageWhole.uml"));
+        JSONSchemaToUML other = new JSONSchemaToUML("test");
+        other.launch(new File("inputs"));
+        other.saveModel(new File("outputs/byPackageOther.uml"));
+        assertTrue(Arrays.equals(Files.readAllBytes(new File("outputs/byPackageWhole.uml").toPath()),
+                Files.readAllBytes(new File("outputs/byPackageOther.uml").toPath())));
+    }
+
+    @Test
+    public void testLazyDefinitions() throws IOException {
+        File inputFolder = new File("outputs/lazy");
+        deleteAll(inputFolder);
+        inputFolder.mkdirs();
+        // Only A (and B, through A) are reachable from the root schemas
+        Files.write(new File(inputFolder, "common.json").toPath(), ("{\"definitions\": {"
+                + "\"A\": {\"type\": \"object\", \"properties\": {\"b\": {\"$ref\": \"#/definitions/B\"}}},"
+                + "\"B\": {\"type\": \"object\", \"properties\": {\"x\": {\"type\": \"string\"}}},"
+                + "\"C\": {\"type\": \"object\", \"properties\": {\"y\": {\"type\": \"string\"}, \"b\": {\"$ref\": \"#/definitions/B\"}}},"
+                + "\"D\": {\"id\": \"http://example.org/d.json\", \"type\": \"object\", \"properties\": {\"z\": {\"type\": \"string\"}}}"
+                + "}}").getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(inputFolder, "root.json").toPath(), ("{\"type\": \"object\", \"properties\": {"
+                + "\"a\": {\"$ref\": \"common.json#/definitions/A\"},"
+                + "\"e\": {\"$ref\": \"#/definitions/E\"}},"
+                + "\"definitions\": {\"E\": {\"type\": \"object\", \"allOf\": [{\"$ref\": \"common.json#/definitions/B\"}]},"
+                + "\"F\": {\"type\": \"object\", \"properties\": {\"w\": {\"type\": \"integer\"}}}}"
+                + "}").getBytes(StandardCharsets.UTF_8));
+
+        JSONSchemaToUML eager = new JSONSchemaToUML("test");
+        eager.launch(inputFolder);
+        JSONSchemaToUML lazy = new JSONSchemaToUML("test");
+        lazy.setLazyDefinitions(true);
+        lazy.launch(inputFolder);
+
+        Package eagerPackage = eager.getModel().getNestedPackage("test").getNestedPackage("lazy");
+        Package lazyPackage = lazy.getModel().getNestedPackage("test").getNestedPackage("lazy");
+        for(String name : Arrays.asList("A", "B", "C", "D", "E", "F", "Root"))
+            assertNotNull(eagerPackage.getPackagedElement(name));
+        for(String name : Arrays.asList("A", "B", "D", "E", "Root"))
+            assertNotNull(lazyPackage.getPackagedElement(name));
+        assertNull(lazyPackage.getPackagedElement("C"));
+        assertNull(lazyPackage.getPackagedElement("F"));
+
+        // References are resolved as in the eager mode
+        Class root = (Class) lazyPackage.getPackagedElement("Root");
+        Class a = (Class) root.getOwnedAttribute("a", null).getType();
+        assertEquals("A", a.getName());
+        assertEquals("B", a.getOwnedAttribute("b", null).getType().getName());
+        assertEquals("B", ((Class) lazyPackage.getPackagedElement("E")).getSuperClasses().get(0).getName());
+
+        // The same model is obtained in parallel and from the cache
+        lazy.saveModel(new File("outputs/lazy.uml"));
+        File cacheFolder = new File("outputs/lazyCache");
+        deleteAll(cacheFolder);
+        for(int i = 0; i < 2; i++) {
+            JSONSchemaToUML other = new JSONSchemaToUML("test");
+            other.setLazyDefinitions(true);
+            other.setCacheFolder(cacheFolder);
+            other.setExecutor(ForkJoinPool.commonPool());
+            other.launch(inputFolder);
+            other.saveModel(new File("outputs/lazyOther.uml"));
+            assertTrue(Arrays.equals(Files.readAllBytes(new File("outputs/lazy.uml").toPath()),
+                    Files.readAllBytes(new File("outputs/lazyOther.uml").toPath())));
+        }
+    }
+
+    @Test
+    public void testReadAhead() throws IOException {
+        File inputFolder = new File("outputs/readAhead");
+        deleteAll(inputFolder);
+        new File(inputFolder, "nested/deeper").mkdirs();
+        String[] folders = { "", "nested/", "nested/deeper/" };
+        String[] parents = { "", "../", "../../" };
+        for(int i = 0; i < 6; i++)
+            Files.write(new File(inputFolder, folders[i % 3] + "E" + i + ".json").toPath(),
+                    ("{\"type\": \"object\", \"title\": \"E" + i + "\", \"properties\": {"
+                    + "\"name\": {\"type\": \"string\", \"maxLength\": " + (i + 1) + "},"
+                    + "\"next\": {\"$ref\": \"" + parents[i % 3] + "E0.json\"}}}").getBytes(StandardCharsets.UTF_8));
+        // Invalid files are skipped as in the sequential analysis
+        Files.write(new File(inputFolder, "nested/invalid.json").toPath(), "{\"type\": ".getBytes(StandardCharsets.UTF_8));
+
+        JSONSchemaToUML sequential = new JSONSchemaToUML("test");
+        sequential.launch(inputFolder);
+        sequential.saveModel(new File("outputs/readAhead.uml"));
+
+        // The same model is obtained with any read ahead, also from the cache
+        File cacheFolder = new File("outputs/readAheadCache");
+        deleteAll(cacheFolder);
+        for(int readAhead : new int[] { 1, 4, 1 }) {
+            JSONSchemaToUML pipelined = new JSONSchemaToUML("test");
+            pipelined.setReadAhead(readAhead);
+            pipelined.setCacheFolder(cacheFolder);
+            pipelined.launch(inputFolder);
+            pipelined.saveModel(new File("outputs/readAheadOther.uml"));
+            assertTrue(Arrays.equals(Files.readAllBytes(new File("outputs/readAhead.uml").toPath()),
+                    Files.readAllBytes(new File("outputs/readAheadOther.uml").toPath())));
+        }
+
+        try {
+            new JSONSchemaToUML("test").setReadAhead(-1);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testUpdate() throws IOException {
+        File inputFolder = new File("outputs/update");
+        deleteAll(inputFolder);
+        new File(inputFolder, "nested").mkdirs();
+        File a = new File(inputFolder, "A.json"), b = new File(inputFolder, "B.json"), c = new File(inputFolder, "nested/C.json");
+        Files.write(a.toPath(), ("{\"type\": \"object\", \"properties\": {\"name\": {\"type\": \"string\"}, \"b\": {\"$ref\": \"B.json\"}}}").getBytes(StandardCharsets.UTF_8));
+        Files.write(b.toPath(), ("{\"type\": \"object\", \"properties\": {\"code\": {\"type\": \"integer\"}}}").getBytes(StandardCharsets.UTF_8));
+        Files.write(c.toPath(), ("{\"type\": \"object\", \"allOf\": [{\"$ref\": \"../B.json\"}], \"properties\": {\"a\": {\"$ref\": \"../A.json\"}}}").getBytes(StandardCharsets.UTF_8));
+
+        JSONSchemaToUML generator = new JSONSchemaToUML("test");
+        generator.setIncrementalUpdates(true);
+        generator.launch(inputFolder);
+        assertSameModel(generator, inputFolder);
+
+        // Modified file, referenced by the rest
+        Files.write(b.toPath(), ("{\"type\": \"object\", \"properties\": {\"code\": {\"type\": \"string\"}, \"a\": {\"$ref\": \"A.json\"}}}").getBytes(StandardCharsets.UTF_8));
+        generator.update(b);
+        assertSameModel(generator, inputFolder);
+        Package updatedPackage = generator.getModel().getNestedPackage("test").getNestedPackage("update");
+        assertSame(updatedPackage.getPackagedElement("B"), ((Class) updatedPackage.getNestedPackage("nested").getPackagedElement("C")).getSuperClasses().get(0));
+
+        // Deleted and created again
+        byte[] contents = Files.readAllBytes(a.toPath());
+        a.delete();
+        generator.update(a);
+        assertSameModel(generator, inputFolder);
+        Files.write(a.toPath(), contents);
+        generator.update(a);
+        assertSameModel(generator, inputFolder);
+
+        // Invalid file, and fixed again
+        Files.write(c.toPath(), "{\"type\": ".getBytes(StandardCharsets.UTF_8));
+        generator.update(c);
+        assertSameModel(generator, inputFolder);
+        Files.write(c.toPath(), ("{\"type\": \"object\", \"properties\": {\"a\": {\"$ref\": \"../A.json\"}}}").getBytes(StandardCharsets.UTF_8));
+        generator.update(c);
+        assertSameModel(generator, inputFolder);
+
+        // New folder (the model is built again)
+        File d = new File(inputFolder, "other/D.json");
+        d.getParentFile().mkdirs();
+        Files.write(d.toPath(), ("{\"type\": \"object\", \"properties\": {\"b\": {\"$ref\": \"../B.json\"}}}").getBytes(StandardCharsets.UTF_8));
+        generator.update(d.getParentFile());
+        assertSameModel(generator, inputFolder);
+    }
+
+    @Test
+    public void testWatch() throws IOException, InterruptedException {
+        File inputFolder = new File("outputs/watch");
+        deleteAll(inputFolder);
+        inputFolder.mkdirs();
+        File a = new File(inputFolder, "A.json");
+        Files.write(a.toPath(), ("{\"type\": \"object\", \"properties\": {\"b\": {\"$ref\": \"B.json\"}}}").getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(inputFolder, "B.json").toPath(), ("{\"type\": \"object\", \"properties\": {\"code\": {\"type\": \"integer\"}}}").getBytes(StandardCharsets.UTF_8));
+
+        JSONSchemaToUML generator = new JSONSchemaToUML("test");
+        generator.setIncrementalUpdates(true);
+        generator.launch(inputFolder);
+        File target = new File("outputs/watch.uml");
+        generator.saveModel(target);
+        try (JSONSchemaWatcher watcher = new JSONSchemaWatcher()) {
+            watcher.watch(inputFolder, generator, target, ModelFormat.XMI);
+            Files.write(a.toPath(), ("{\"type\": \"object\", \"properties\": {\"name\": {\"type\": \"string\"}, \"b\": {\"$ref\": \"B.json\"}}}").getBytes(StandardCharsets.UTF_8));
+            List<File> changed = Collections.emptyList();
+            for(int i = 0; i < 60 && changed.isEmpty(); i++)
+                changed = watcher.poll(1, TimeUnit.SECONDS);
+            assertEquals(a.getAbsoluteFile(), changed.get(0).getAbsoluteFile());
+        }
+
+        JSONSchemaToUML launched = new JSONSchemaToUML("test");
+        launched.launch(inputFolder);
+        launched.saveModel(new File("outputs/launched.uml"));
+        assertTrue(Arrays.equals(Files.readAllBytes(new File("outputs/launched.uml").toPath()), Files.readAllBytes(target.toPath())));
+    }
+
+    /**
+     * Checks that a model updated incrementally is the same as the one of a new launch
+     */
+    private void assertSameModel(JSONSchemaToUML generator, File inputFolder) throws IOException {
+        generator.saveModel(new File("outputs/updated.uml"));
+        JSONSchemaToUML launched = new JSONSchemaToUML("test");
+        launched.launch(inputFolder);
+        launched.saveModel(new File("outputs/launched.uml"));
+        assertEquals(new String(Files.readAllBytes(new File("outputs/launched.uml").toPath()), StandardCharsets.UTF_8),
+                new String(Files.readAllBytes(new File("outputs/updated.uml").toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testMetrics() throws IOException {
+        File inputFolder = new File("outputs/metrics");
+        deleteAll(inputFolder);
+        inputFolder.mkdirs();
+        Files.write(new File(inputFolder, "a.json").toPath(), ("{\"type\": \"object\", \"properties\": {"
+                + "\"name\": {\"type\": \"string\", \"maxLength\": 10, \"minLength\": 1},"
+                + "\"status\": {\"type\": \"string\", \"enum\": [\"on\", \"off\"]},"
+                + "\"item\": {\"$ref\": \"#/definitions/Item\"},"
+                + "\"missing\": {\"$ref\": \"#/definitions/Missing\"}},"
+                + "\"definitions\": {\"Item\": {\"type\": \"object\", \"properties\": {\"x\": {\"type\": \"integer\"}}}}"
+                + "}").getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(inputFolder, "b.json").toPath(), "{\"type\": 1}".getBytes(StandardCharsets.UTF_8));
+
+        TransformationMetrics metrics = new TransformationMetrics();
+        AtomicInteger files = new AtomicInteger(), launches = new AtomicInteger();
+        metrics.addListener(new MetricsListener() {
+            @Override
+            public void fileAnalyzed(File file, long nanos, boolean valid) {
+                files.incrementAndGet();
+            }
+
+            @Override
+            public void launchCompleted(TransformationMetrics completed) {
+                launches.incrementAndGet();
+            }
+        });
+        JSONSchemaToUML io = new JSONSchemaToUML("test");
+        io.setMetrics(metrics);
+        io.launch(inputFolder);
+        io.saveModel(new File("outputs/metrics.uml"));
+
+        assertEquals(2, files.get());
+        assertEquals(1, launches.get());
+        assertEquals(2, metrics.getCount(Counter.FILES));
+        assertEquals(1, metrics.getCount(Counter.INVALID_FILES));
+        assertEquals(2, metrics.getCount(Counter.CLASSES));
+        assertEquals(1, metrics.getCount(Counter.ENUMERATIONS));
+        assertEquals(2, metrics.getCount(Counter.ASSOCIATIONS));
+        assertEquals(2, metrics.getCount(Counter.CONSTRAINTS));
+        assertEquals(1, metrics.getCount(Counter.UNRESOLVED_REFERENCES));
+        assertEquals(Collections.singleton(new File(inputFolder, "a.json").toURI() + "#/definitions/Missing"), metrics.getUnresolvedReferences().keySet());
+        assertEquals(2, metrics.getCalls(Phase.PARSE));
+        assertEquals(1, metrics.getCalls(Phase.ANALYZE));
+        assertEquals(1, metrics.getCalls(Phase.SAVE));
+        assertTrue(metrics.getTime(Phase.VALIDATE) > 0);
+        assertTrue(metrics.getFileLatencyPercentile(100) > 0);
+
+        File report = new File("outputs/metrics.json");
+        metrics.writeReport(report);
+        JsonNode reportNode = new ObjectMapper().readTree(report);
+        assertEquals(2, reportNode.get("counters").get("classes").asInt());
+        assertEquals(1, reportNode.get("phases").get("resolveAssociations").get("calls").asInt());
+        assertEquals(2, reportNode.get("fileLatency").get("count").asInt());
+
+        metrics.reset();
+        assertEquals(0, metrics.getCount(Counter.FILES));
+        assertTrue(metrics.getUnresolvedReferences().isEmpty());
+    }
+
+    @Test
+    public void testUMLElementFactory() {
+        // The elements are the same as the ones created by the operations of UML2
+        Model expected = UMLFactory.eINSTANCE.createModel();
+        Class a = expected.createOwnedClass("A", false);
+        Class b = expected.createOwnedClass("B", false);
+        a.createOwnedAttribute("name", expected.createOwnedPrimitiveType("String"));
+        a.createOwnedAttribute("status", expected.createOwnedEnumeration("StatusEnum"));
+        a.createAssociation(true, AggregationKind.NONE_LITERAL, "b", 0, -1, b, false, AggregationKind.NONE_LITERAL, "A", 1, 1);
+        b.createAssociation(true, AggregationKind.COMPOSITE_LITERAL, "a", 1, 1, a, true, AggregationKind.NONE_LITERAL, "b", 0, 1);
+
+        UMLElementFactory factory = new UMLElementFactory();
+        Model created = UMLFactory.eINSTANCE.createModel();
+        Class createdA = factory.createClass(created, "A");
+        Class createdB = factory.createClass(created, "B");
+        factory.createAttribute(createdA, "name", factory.createType(created, UMLFactory.eINSTANCE.createPrimitiveType(), "String"));
+        factory.createAttribute(createdA, "status", factory.createType(created, UMLFactory.eINSTANCE.createEnumeration(), "StatusEnum"));
+        factory.createAssociation(createdA, true, AggregationKind.NONE_LITERAL, "b", 0, -1, createdB, false, AggregationKind.NONE_LITERAL, "A", 1, 1);
+        factory.createAssociation(createdB, true, AggregationKind.COMPOSITE_LITERAL, "a", 1, 1, createdA, true, AggregationKind.NONE_LITERAL, "b", 0, 1);
+
+        assertTrue(EcoreUtil.equals(expected, created));
+        assertEquals(a.getAssociations().size(), createdA.getAssociations().size());
+        assertEquals(b.getAssociations().size(), createdB.getAssociations().size());
+        for(int i = 0; i < 2; i++) {
+            Association association = (Association) expected.getPackagedElements().get(4 + i);
+            Association createdAssociation = (Association) created.getPackagedElements().get(4 + i);
+            assertEquals(association.getOwnedEnds().size(), createdAssociation.getOwnedEnds().size());
+            for(Property end : createdAssociation.getMemberEnds())
+                assertSame(createdAssociation, end.getAssociation());
+        }
+
+        // The bounds are checked as UML2 does
+        try {
+            a.createAssociation(true, AggregationKind.NONE_LITERAL, "c", 2, 1, b, false, AggregationKind.NONE_LITERAL, "A", 1, 1);
+            fail();
+        } catch (IllegalArgumentException e) { }
+        try {
+            factory.createAssociation(createdA, true, AggregationKind.NONE_LITERAL, "c", 2, 1, createdB, false, AggregationKind.NONE_LITERAL, "A", 1, 1);
+            fail();
+        } catch (IllegalArgumentException e) { }
+        try {
+            factory.createAssociation(createdA, true, AggregationKind.NONE_LITERAL, "c", 0, 1, null, false, AggregationKind.NONE_LITERAL, "A", 1, 1);
+            fail();
+        } catch (IllegalArgumentException e) { }
+    }
+
+    @Test
+    public void testEmptyTypeArray() throws IOException {
+        // An empty array of types is ignored, like an unknown type
+        File input = new File("outputs/emptyType.json");
+        Files.write(input.toPath(), ("{\"type\": \"object\", \"properties\": {\"any\": {\"type\": []}, "
+                + "\"name\": {\"type\": \"string\"}}}").getBytes(StandardCharsets.UTF_8));
+        JSONSchemaToUML generator = new JSONSchemaToUML("test");
+        generator.setValidationLevel(ValidationLevel.NONE);
+        generator.launch(input);
+        Class concept = (Class) generator.getModel().getNestedPackage("test").getPackagedElement("EmptyType");
+        assertNotNull(concept.getOwnedAttribute("name", null));
+        assertNull(concept.getOwnedAttribute("any", null));
+    }
+
+    @Test
+    public void testSharedPrimitiveTypes() throws IOException {
+        File inputFolder = new File("outputs/shared");
+        deleteAll(inputFolder);
+        inputFolder.mkdirs();
+        File a = new File(inputFolder, "A.json");
+        Files.write(a.toPath(), ("{\"type\": \"object\", \"properties\": {\"name\": {\"type\": \"string\"}, "
+                + "\"created\": {\"type\": \"string\", \"format\": \"date-time\"}}}").getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(inputFolder, "B.json").toPath(), ("{\"type\": \"object\", \"properties\": {\"code\": {\"type\": \"integer\"}}}").getBytes(StandardCharsets.UTF_8));
+
+        JSONSchemaToUML generator = new JSONSchemaToUML("test");
+        generator.setSharedPrimitiveTypes(true);
+        generator.setIncrementalUpdates(true);
+        generator.launch(inputFolder);
+        JSONSchemaToUML other = new JSONSchemaToUML("other");
+        other.setSharedPrimitiveTypes(true);
+        other.launch(inputFolder);
+
+        Package sharedPackage = generator.getModel().getNestedPackage("test").getNestedPackage("shared");
+        Package otherPackage = other.getModel().getNestedPackage("other").getNestedPackage("shared");
+        Type stringType = ((Class) sharedPackage.getPackagedElement("A")).getOwnedAttribute("name", null).getType();
+        Type otherStringType = ((Class) otherPackage.getPackagedElement("A")).getOwnedAttribute("name", null).getType();
+        assertEquals(UMLResource.UML_PRIMITIVE_TYPES_LIBRARY_URI + "#String", EcoreUtil.getURI(stringType).toString());
+        assertEquals(UMLResource.UML_PRIMITIVE_TYPES_LIBRARY_URI + "#Integer",
+                EcoreUtil.getURI(((Class) sharedPackage.getPackagedElement("B")).getOwnedAttribute("code", null).getType()).toString());
+        // The library is loaded once and shared by the models of every instance
+        assertFalse(stringType.eIsProxy());
+        assertEquals(UMLResource.UML_PRIMITIVE_TYPES_LIBRARY_URI, stringType.eResource().getURI().toString());
+        assertSame(stringType, otherStringType);
+        // Date is not in the library, so it is created in the model
+        Type dateType = ((Class) sharedPackage.getPackagedElement("A")).getOwnedAttribute("created", null).getType();
+        assertSame(generator.getModel(), dateType.getModel());
+        assertNotSame(dateType, ((Class) otherPackage.getPackagedElement("A")).getOwnedAttribute("created", null).getType());
+
+        generator.saveModel(new File("outputs/shared.uml"));
+        String saved = new String(Files.readAllBytes(new File("outputs/shared.uml").toPath()), StandardCharsets.UTF_8);
+        assertTrue(saved.contains(UMLResource.UML_PRIMITIVE_TYPES_LIBRARY_URI + "#String"));
+        assertTrue(saved.contains(UMLResource.UML_PRIMITIVE_TYPES_LIBRARY_URI + "#Integer"));
+
+        Files.write(a.toPath(), ("{\"type\": \"object\", \"properties\": {\"name\": {\"type\": \"string\"}}}").getBytes(StandardCharsets.UTF_8));
+        generator.update(a);
+        for(TreeIterator<EObject> it = generator.getModel().eAllContents(); it.hasNext(); )
+            assertFalse(it.next() instanceof PrimitiveType);
+        assertSame(stringType, ((Class) sharedPackage.getPackagedElement("A")).getOwnedAttribute("name", null).getType());
+    }
+
+    @Test
+    public void testDeepNesting() throws IOException {
+        File inputFolder = new File("outputs/deep");
+        deleteAll(inputFolder);
+        inputFolder.mkdirs();
+        int depth = 5000;
+        StringBuilder sb = new StringBuilder();
+        for(int i = 0; i < depth; i++)
+            sb.append("{\"type\": \"object\", \"properties\": {\"name\": {\"type\": \"string\"}, \"child\": ");
+        sb.append("{\"type\": \"string\"}");
+        for(int i = 0; i < depth; i++)
+            sb.append("}}");
+        Files.write(new File(inputFolder, "deep.json").toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+
+        TransformationMetrics metrics = new TransformationMetrics();
+        JSONSchemaToUML generator = new JSONSchemaToUML("test");
+        generator.setValidationLevel(ValidationLevel.STRUCTURAL);
+        generator.setMetrics(metrics);
+        generator.launch(inputFolder);
+
+        assertEquals(0, metrics.getCount(Counter.INVALID_FILES));
+        assertEquals(depth, metrics.getCount(Counter.CLASSES));
+        assertEquals(depth - 1, metrics.getCount(Counter.ASSOCIATIONS));
+    }
+
+    private Set<String> qualifiedNames(Model model) {
+        Set<String> result = new HashSet<>();
+        for(TreeIterator<EObject> it = model.eAllContents(); it.hasNext(); ) {
+            EObject element = it.next();
+            if(element instanceof TypedElement) {
+                Type type = ((TypedElement) element).getType();
+                result.add(((TypedElement) element).getQualifiedName() + " : " + (type == null ? null : type.getName()));
+            } else if(element instanceof NamedElement)
+                result.add(((NamedElement) element).getQualifiedName());
+        }
+        return result;
+    }
+
+    private void deleteAll(File file) {
+        if(file.isDirectory())
+            for(File child : file.listFiles())
+                deleteAll(child);
+        file.delete();
+    }
 }
@@ -110,4 +110,68 @@ public class JSONSchemaURITest extends TestCase {
 	}
 	
 	
+	@Test
+	public void testResolve() {
+		// Examples of Section 5.4 - RFC 3986
+		String base = "http://a/b/c/d;p?q";
+		assertEquals("g:h", JSONSchemaURI.resolve(base, "g:h"));
+		assertEquals("http://a/b/c/g", JSONSchemaURI.resolve(base, "g"));
+		assertEquals("http://a/b/c/g", JSONSchemaURI.resolve(base, "./g"));
+		assertEquals("http://a/b/c/g/", JSONSchemaURI.resolve(base, "g/"));
+		assertEquals("http://a/g", JSONSchemaURI.resolve(base, "/g"));
+		assertEquals("http://g", JSONSchemaURI.resolve(base, "//g"));
+		assertEquals("http://a/b/c/d;p?y", JSONSchemaURI.resolve(base, "?y"));
+		assertEquals("http://a/b/c/g?y", JSONSchemaURI.resolve(base, "g?y"));
+		assertEquals("http://a/b/c/d;p?q#s", JSONSchemaURI.resolve(base, "#s"));
+		assertEquals("http://a/b/c/g#s", JSONSchemaURI.resolve(base, "g#s"));
+		assertEquals("http://a/b/c/d;p?q", JSONSchemaURI.resolve(base, ""));
+		assertEquals("http://a/b/", JSONSchemaURI.resolve(base, ".."));
+		assertEquals("http://a/b/g", JSONSchemaURI.resolve(base, "../g"));
+		assertEquals("http://a/", JSONSchemaURI.resolve(base, "../.."));
+		assertEquals("http://a/g", JSONSchemaURI.resolve(base, "../../../g"));
+		assertEquals("http://a/g", JSONSchemaURI.resolve(base, "/./g"));
+		assertEquals("http://a/b/c/g.", JSONSchemaURI.resolve(base, "g."));
+		assertEquals("http://a/b/c/..g", JSONSchemaURI.resolve(base, "..g"));
+		assertEquals("http://a/b/g", JSONSchemaURI.resolve(base, "./../g"));
+		assertEquals("http://a/b/c/g/h", JSONSchemaURI.resolve(base, "g/./h"));
+		assertEquals("http://a/b/c/h", JSONSchemaURI.resolve(base, "g/../h"));
+	}
+
+	@Test
+	public void testResolveSchemaReferences() {
+		String base = "http://example.com/schemas/a.json";
+		assertEquals("http://example.com/schemas/a.json#/definitions/b", JSONSchemaURI.resolve(base, "#/definitions/b"));
+		assertEquals("http://example.com/schemas/b.json#/definitions/c", JSONSchemaURI.resolve(base, "b.json#/definitions/c"));
+		assertEquals("file:/tmp/b.json", JSONSchemaURI.resolve("file:/tmp/schemas/a.json", "../b.json"));
+	}
+	
+	@Test
+	public void testRelative() {
+		JSONSchemaURI jsu = new JSONSchemaURI("other/schema.json#/definitions/name");
+		assertNull(jsu.getScheme());
+		assertNull(jsu.getAuthority());
+		assertEquals("other/schema.json", jsu.getPath());
+		assertNull(jsu.getQuery());
+		assertEquals("/definitions/name", jsu.getFragment());
+		assertEquals("schema", jsu.digestName());
+		assertEquals("schema.json", jsu.digestIdName());
+		assertEquals("name", jsu.digestFragmentName());
+
+		jsu = new JSONSchemaURI("urn:example:schema");
+		assertEquals("urn", jsu.getScheme());
+		assertNull(jsu.getAuthority());
+		assertEquals("example:schema", jsu.getPath());
+	}
+
+	@Test
+	public void testEquals() {
+		String URI = "foo://example.com:8042/over/there.json#/fragment/name";
+		JSONSchemaURI jsu = new JSONSchemaURI(URI);
+		assertEquals(jsu, new JSONSchemaURI(URI));
+		assertEquals(jsu.hashCode(), new JSONSchemaURI(URI).hashCode());
+		assertFalse(jsu.equals(new JSONSchemaURI("foo://example.com:8042/over/there.json")));
+		assertSame(JSONSchemaURI.of(URI), JSONSchemaURI.of(new String(URI)));
+		assertEquals(jsu, JSONSchemaURI.of(URI));
+	}
+	
 }
@@ -2,13 +2,19 @@ package edu.uoc.som.jsonschematouml.validator.test;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
 
 import org.junit.Test;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.fge.jackson.JsonLoader;
 import com.github.fge.jsonschema.core.exceptions.ProcessingException;
 import com.github.fge.jsonschema.core.report.ProcessingReport;
 
+import edu.uoc.som.jsonschematouml.validator.JSONDocument;
 import edu.uoc.som.jsonschematouml.validator.JSONSchemaValidator;
+import edu.uoc.som.jsonschematouml.validator.ValidationLevel;
 import junit.framework.TestCase;
 
 public class JSONSchemaValidatorTest extends TestCase {
@@ -33,4 +39,72 @@ public class JSONSchemaValidatorTest extends TestCase {
 			fail(e.getLocalizedMessage());
 		}
     }
+
+    @Test
+    public void testValidationLevels() {
+        try {
+            JsonNode valid = JsonLoader.fromFile(new File("inputs/testValid.json"));
+            JsonNode invalid = JsonLoader.fromFile(new File("inputs/testInvalid.json"));
+            assertTrue(JSONSchemaValidator.isValid(valid, ValidationLevel.STRUCTURAL));
+            assertFalse(JSONSchemaValidator.isValid(invalid, ValidationLevel.STRUCTURAL));
+            assertTrue(JSONSchemaValidator.isValid(invalid, ValidationLevel.NONE));
+            assertFalse(JSONSchemaValidator.isValid(invalid, ValidationLevel.FULL));
+
+            assertFalse(JSONSchemaValidator.isValid(JsonLoader.fromString("{\"required\": [1]}"), ValidationLevel.STRUCTURAL));
+            assertFalse(JSONSchemaValidator.isValid(JsonLoader.fromString("{\"properties\": {\"a\": {\"maxLength\": -1}}}"), ValidationLevel.STRUCTURAL));
+            assertFalse(JSONSchemaValidator.isValid(JsonLoader.fromString("{\"items\": {\"oneOf\": []}}"), ValidationLevel.STRUCTURAL));
+            assertTrue(JSONSchemaValidator.isValid(JsonLoader.fromString("{\"properties\": {\"type\": {\"type\": [\"string\", \"null\"]}}}"), ValidationLevel.STRUCTURAL));
+        } catch (IOException | ProcessingException e) {
+            fail(e.getLocalizedMessage());
+        }
+    }
+
+    @Test
+    public void testDocument() {
+        File input = new File("outputs/document.json");
+        try {
+            input.getParentFile().mkdirs();
+            byte[] contents = "{\"title\": \"caf\u00e9\"}".getBytes("UTF-8");
+            byte[] bom = new byte[contents.length + 3];
+            bom[0] = (byte) 0xEF;
+            bom[1] = (byte) 0xBB;
+            bom[2] = (byte) 0xBF;
+            System.arraycopy(contents, 0, bom, 3, contents.length);
+            Files.write(input.toPath(), bom);
+            JSONDocument document = JSONDocument.read(input);
+            assertEquals("caf\u00e9", document.parse().get("title").asText());
+            assertEquals(document.digest(), JSONDocument.read(input).digest());
+            try (Reader reader = JSONDocument.newReader(input)) {
+                assertEquals('{', reader.read());
+            }
+            assertTrue(input.delete());
+
+            Files.write(input.toPath(), new byte[] { '{', '"', (byte) 0xC3, '"', ':', '1', '}' });
+            try {
+                JSONDocument.read(input).parse();
+                fail("Malformed UTF-8 accepted");
+            } catch (IOException e) {
+                // expected
+            }
+            Files.write(input.toPath(), "{} {}".getBytes("UTF-8"));
+            try {
+                JSONDocument.read(input).parse();
+                fail("Trailing content accepted");
+            } catch (IOException e) {
+                // expected
+            }
+
+            // Large files are not mapped, so they can be changed (or deleted) while the document is used
+            StringBuilder large = new StringBuilder("{\"description\": \"");
+            while(large.length() < 2 * 1024 * 1024)
+                large.append("0123456789");
+            Files.write(input.toPath(), large.append("\"}").toString().getBytes("UTF-8"));
+            document = JSONDocument.read(input);
+            Files.write(input.toPath(), "{}".getBytes("UTF-8"));
+            assertEquals(large.length() - 19, document.parse().get("description").asText().length());
+            assertTrue(input.delete());
+        } catch (IOException e) {
+            fail(e.getLocalizedMessage());
+        }
+    }
 }
@@ -0,0 +1,460 @@
+package edu.uoc.som.jsonschematouml.cli;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.uml2.common.util.CacheAdapter;
+
+import edu.uoc.som.jsonschematouml.generators.JSONSchemaToUML;
+import edu.uoc.som.jsonschematouml.generators.JSONSchemaToUMLException;
+import edu.uoc.som.jsonschematouml.generators.JSONSchemaWatcher;
+import edu.uoc.som.jsonschematouml.generators.ModelFormat;
+import edu.uoc.som.jsonschematouml.generators.TransformationMetrics;
+import edu.uoc.som.jsonschematouml.validator.ValidationCache;
+import edu.uoc.som.jsonschematouml.validator.ValidationLevel;
+
+/**
+ * Headless entry point of the tool, to be run as a plain Java application (i.e., outside Eclipse/OSGi).
+ *
+ * Each input root (a JSON Schema file or a folder) is transformed into its own UML model, which is saved in
+ * the output folder as &lt;root name&gt;.uml (as the Eclipse handler does). Roots are transformed and saved
+ * concurrently with a bounded number of threads. The time spent analyzing and saving each root is reported
+ * at the end, in the order of the inputs.
+ *
+ * UML2 records the inverse references of the elements in a cache adapter shared by the whole JVM, which is not
+ * thread-safe, so {@link #main(String[])} makes UML2 keep an adapter per thread instead (see {@link #THREAD_LOCAL_CACHE_ADAPTER}).
+ * Each root is then transformed, saved and updated (in watch mode) by a single thread. If UML2 was loaded before
+ * (e.g., when {@link #run(String[], PrintStream, PrintStream)} is called by another application), roots are
+ * transformed one after another.
+ *
+ * Run without arguments to get the usage.
+ */
+public class JSONSchemaToUMLCLI {
+	/**
+	 * The system property which makes UML2 keep a cache adapter per thread. It has to be set before UML2 is loaded
+	 */
+	public static final String THREAD_LOCAL_CACHE_ADAPTER = "org.eclipse.uml2.common.util.CacheAdapter.ThreadLocal";
+
+	/**
+	 * The usage of the tool
+	 */
+	private static final String USAGE =
+			"Usage: java " + JSONSchemaToUMLCLI.class.getName() + " [options] <input>...\n" +
+			"Transforms each input (a JSON Schema file or a folder) into a UML model.\n" +
+			"Options:\n" +
+			"  -o, --output <folder>            Folder where the models are saved (default: current folder)\n" +
+			"  -t, --threads <n>                Number of inputs transformed concurrently (default: available processors).\n" +
+			"                                   Each input is transformed, saved and watched by a single thread\n" +
+			"  -m, --model <name>               Name of the models (default: name of each input)\n" +
+			"  -v, --validation <level>         none, structural or full (default: full)\n" +
+			"      --cache <folder>             Enables the incremental mode, storing the analyzed files in the folder\n" +
+			"      --validation-cache <file>    Stores the results of the validation in the file\n" +
+			"  -d, --deduplicate                Creates a single type for structurally identical inline sub-schemas\n" +
+			"      --lazy-definitions           Maps only the definitions reached by references from the schemas\n" +
+			"      --shared-primitive-types     Types the attributes with the UML primitive types library\n" +
+			"      --read-ahead <n>             Number of files read and validated ahead of the analysis (default: 0)\n" +
+			"      --metrics <file>             Writes a JSON report with the metrics of the transformations to the file\n" +
+			"  -w, --watch                      Keeps running and updates the models when the inputs change\n" +
+			"  -h, --help                       Shows this message";
+
+	/**
+	 * The result of transforming an input root
+	 */
+	static class RootResult {
+		/**
+		 * The input root
+		 */
+		File input;
+		/**
+		 * The model saved
+		 */
+		File output;
+		/**
+		 * Time (in milliseconds) spent analyzing and saving the root
+		 */
+		long analysisTime, saveTime;
+		/**
+		 * The error found (null if the transformation succeeded)
+		 */
+		Throwable error;
+		/**
+		 * The instance which transformed the root (only kept in watch mode)
+		 */
+		JSONSchemaToUML generator;
+		/**
+		 * The thread which transformed the root, and updates its model in watch mode
+		 */
+		ExecutorService worker;
+	}
+
+	private List<File> inputs = new ArrayList<>();
+	private File outputFolder = new File(".");
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private String modelName;
+	private ValidationLevel validationLevel = ValidationLevel.FULL;
+	private File cacheFolder;
+	private ValidationCache validationCache;
+	private boolean deduplicate;
+	private boolean lazyDefinitions;
+	private boolean sharedPrimitiveTypes;
+	private int readAhead;
+	private boolean watch;
+	private File metricsFile;
+	private TransformationMetrics metrics;
+	private final List<ExecutorService> workers = new ArrayList<>();
+
+	public static void main(String[] args) {
+		System.setProperty(THREAD_LOCAL_CACHE_ADAPTER, "true");
+		System.exit(run(args, System.out, System.err));
+	}
+
+	/**
+	 * Runs the tool
+	 *
+	 * @param args The arguments of the command line
+	 * @param out The stream where the report is printed
+	 * @param err The stream where the errors are printed
+	 * @return The exit code: 0 if every input was transformed, 1 if some failed, 2 if the arguments are wrong
+	 */
+	public static int run(String[] args, PrintStream out, PrintStream err) {
+		JSONSchemaToUMLCLI cli = new JSONSchemaToUMLCLI();
+		try {
+			if(!cli.parseArguments(args)) {
+				out.println(USAGE);
+				return 0;
+			}
+		} catch (IllegalArgumentException e) {
+			err.println(e.getMessage());
+			err.println(USAGE);
+			return 2;
+		}
+
+		long start = System.nanoTime();
+		List<RootResult> results = cli.transform();
+		long totalTime = (System.nanoTime() - start) / 1000000;
+
+		int failed = 0;
+		out.println(String.format(Locale.ROOT, "%-50s %12s %12s  %s", "Input", "Analysis(ms)", "Save(ms)", "Output"));
+		for(RootResult result : results) {
+			if(result.error == null) {
+				out.println(String.format(Locale.ROOT, "%-50s %12d %12d  %s", result.input.getPath(), result.analysisTime, result.saveTime, result.output.getPath()));
+			} else {
+				failed++;
+				out.println(String.format(Locale.ROOT, "%-50s %12s %12s  %s", result.input.getPath(), "-", "-", "FAILED"));
+				err.println("The transformation of " + result.input.getPath() + " failed: " + result.error);
+			}
+		}
+		out.println(String.format(Locale.ROOT, "%d input(s), %d failed, %d ms with %d thread(s)", results.size(), failed, totalTime, cli.workers.size()));
+		if(cli.metrics != null) {
+			try {
+				cli.metrics.writeReport(cli.metricsFile);
+			} catch (IOException e) {
+				err.println("The metrics could not be written to " + cli.metricsFile.getPath() + ": " + e.getMessage());
+				return 1;
+			}
+		}
+		if(cli.watch)
+			return cli.watch(results, out, err);
+		return failed == 0 ? 0 : 1;
+	}
+
+	/**
+	 * Watches the inputs transformed and updates their models when they change, until the tool is interrupted.
+	 * The models are updated by the threads which built them, each one watching its own inputs
+	 *
+	 * @param results The results of the transformation of the inputs
+	 * @param out The stream where the updates are reported
+	 * @param err The stream where the errors are printed
+	 * @return The exit code: 1 if the inputs cannot be watched
+	 */
+	private int watch(List<RootResult> results, PrintStream out, PrintStream err) {
+		List<Future<?>> watchers = new ArrayList<>();
+		for(ExecutorService worker : workers) {
+			List<RootResult> watched = new ArrayList<>();
+			for(RootResult result : results)
+				if(result.error == null && result.worker == worker)
+					watched.add(result);
+			if(!watched.isEmpty())
+				watchers.add(worker.submit(() -> watchInputs(watched, out, err)));
+		}
+		out.println("Watching the inputs for changes (press Ctrl+C to stop)");
+		try {
+			for(Future<?> watcher : watchers)
+				watcher.get();
+			return 0;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return 0;
+		} catch (ExecutionException e) {
+			err.println("The inputs could not be watched: " + e.getCause().getMessage());
+			return 1;
+		} finally {
+			for(ExecutorService worker : workers)
+				worker.shutdownNow();
+		}
+	}
+
+	/**
+	 * Watches some inputs transformed by this thread and updates their models when they change, until the thread is interrupted
+	 *
+	 * @param watched The results of the transformation of the inputs
+	 * @param out The stream where the updates are reported
+	 * @param err The stream where the errors are printed
+	 * @return Nothing (so it can be submitted as a {@link java.util.concurrent.Callable})
+	 * @throws IOException If the inputs cannot be watched
+	 */
+	private Void watchInputs(List<RootResult> watched, PrintStream out, PrintStream err) throws IOException {
+		try (JSONSchemaWatcher watcher = new JSONSchemaWatcher()) {
+			for(RootResult result : watched)
+				watcher.watch(result.input, result.generator, result.output, ModelFormat.XMI);
+			while(true) {
+				try {
+					List<File> changed = watcher.poll(1, TimeUnit.SECONDS);
+					for(File file : changed)
+						out.println("Updated after changing " + file.getPath());
+				} catch (RuntimeException e) {
+					err.println("The models could not be updated: " + e);
+				}
+			}
+		} catch (InterruptedException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Parses the arguments of the command line
+	 *
+	 * @param args The arguments
+	 * @return False if the usage has to be shown
+	 * @throws IllegalArgumentException If the arguments are wrong
+	 */
+	private boolean parseArguments(String[] args) {
+		for(int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			switch(arg) {
+			case "-h":
+			case "--help":
+				return false;
+			case "-o":
+			case "--output":
+				outputFolder = new File(value(args, ++i, arg));
+				break;
+			case "-t":
+			case "--threads":
+				try {
+					threads = Integer.parseInt(value(args, ++i, arg));
+				} catch (NumberFormatException e) {
+					throw new IllegalArgumentException("The number of threads must be a number");
+				}
+				if(threads < 1)
+					throw new IllegalArgumentException("The number of threads must be at least 1");
+				break;
+			case "-m":
+			case "--model":
+				modelName = value(args, ++i, arg);
+				break;
+			case "-v":
+			case "--validation":
+				try {
+					validationLevel = ValidationLevel.valueOf(value(args, ++i, arg).toUpperCase(Locale.ROOT));
+				} catch (IllegalArgumentException e) {
+					throw new IllegalArgumentException("The validation level must be none, structural or full");
+				}
+				break;
+			case "--cache":
+				cacheFolder = new File(value(args, ++i, arg));
+				break;
+			case "--validation-cache":
+				validationCache = new ValidationCache(new File(value(args, ++i, arg)));
+				break;
+			case "-d":
+			case "--deduplicate":
+				deduplicate = true;
+				break;
+			case "--lazy-definitions":
+				lazyDefinitions = true;
+				break;
+			case "--shared-primitive-types":
+				sharedPrimitiveTypes = true;
+				break;
+			case "--read-ahead":
+				try {
+					readAhead = Integer.parseInt(value(args, ++i, arg));
+				} catch (NumberFormatException e) {
+					throw new IllegalArgumentException("The number of files read ahead must be a number");
+				}
+				if(readAhead < 0)
+					throw new IllegalArgumentException("The number of files read ahead cannot be negative");
+				break;
+			case "-w":
+			case "--watch":
+				watch = true;
+				break;
+			case "--metrics":
+				metricsFile = new File(value(args, ++i, arg));
+				metrics = new TransformationMetrics();
+				break;
+			default:
+				if(arg.startsWith("-"))
+					throw new IllegalArgumentException("Unknown option " + arg);
+				File input = new File(arg);
+				if(!input.exists())
+					throw new IllegalArgumentException("The input " + arg + " does not exist");
+				inputs.add(input);
+			}
+		}
+		if(inputs.isEmpty())
+			return false;
+
+		// Each root is saved after its name, so names must be unique
+		Set<String> names = new HashSet<>();
+		for(File input : inputs)
+			if(!names.add(baseName(input)))
+				throw new IllegalArgumentException("Two inputs would be saved as " + baseName(input) + ".uml");
+		if(!outputFolder.isDirectory() && !outputFolder.mkdirs())
+			throw new IllegalArgumentException("Unable to create the output folder " + outputFolder.getPath());
+		return true;
+	}
+
+	private static String value(String[] args, int index, String option) {
+		if(index >= args.length)
+			throw new IllegalArgumentException("The option " + option + " requires a value");
+		return args[index];
+	}
+
+	/**
+	 * Transforms every input root concurrently. Each root is assigned to a worker thread, which transforms and saves
+	 * it (and updates it in watch mode), so the elements of a model are only handled by the thread whose cache
+	 * adapter records them (see {@link #THREAD_LOCAL_CACHE_ADAPTER})
+	 *
+	 * @return The results, in the order of the inputs
+	 */
+	private List<RootResult> transform() {
+		ThreadFactory threadFactory = new ThreadFactory() {
+			private final AtomicInteger counter = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "jsonschematouml-" + counter.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+		workers.add(Executors.newSingleThreadExecutor(threadFactory));
+		// Without an adapter per thread, UML2 would be used by several threads at once
+		int count = hasThreadLocalCacheAdapter(workers.get(0)) ? Math.min(threads, inputs.size()) : 1;
+		while(workers.size() < count)
+			workers.add(Executors.newSingleThreadExecutor(threadFactory));
+
+		List<Future<RootResult>> futures = new ArrayList<>();
+		for(int i = 0; i < inputs.size(); i++) {
+			final File input = inputs.get(i);
+			final ExecutorService worker = workers.get(i % count);
+			futures.add(worker.submit(() -> transform(input, worker)));
+		}
+		if(!watch)
+			for(ExecutorService worker : workers)
+				worker.shutdown();
+
+		List<RootResult> results = new ArrayList<>();
+		for(int i = 0; i < futures.size(); i++) {
+			RootResult result;
+			try {
+				result = futures.get(i).get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				for(ExecutorService worker : workers)
+					worker.shutdownNow();
+				throw new IllegalStateException("The transformation was interrupted", e);
+			} catch (ExecutionException e) {
+				result = new RootResult();
+				result.input = inputs.get(i);
+				result.error = e.getCause();
+			}
+			results.add(result);
+		}
+		return results;
+	}
+
+	/**
+	 * Checks whether UML2 keeps a cache adapter per thread (see {@link #THREAD_LOCAL_CACHE_ADAPTER})
+	 *
+	 * @param worker A thread other than the current one
+	 * @return True if the worker gets another adapter than the current thread
+	 */
+	private static boolean hasThreadLocalCacheAdapter(ExecutorService worker) {
+		try {
+			return worker.submit(CacheAdapter::getInstance).get() != CacheAdapter.getInstance();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} catch (ExecutionException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Transforms an input root and saves its model
+	 *
+	 * @param input The input root
+	 * @param worker The thread transforming the root
+	 * @return The result
+	 */
+	private RootResult transform(File input, ExecutorService worker) {
+		RootResult result = new RootResult();
+		result.input = input;
+		result.output = new File(outputFolder, baseName(input) + ".uml");
+		try {
+			long start = System.nanoTime();
+			JSONSchemaToUML generator = new JSONSchemaToUML(modelName != null ? modelName : baseName(input));
+			generator.setValidationLevel(validationLevel);
+			generator.setValidationCache(validationCache);
+			generator.setCacheFolder(cacheFolder);
+			generator.setStructuralDeduplication(deduplicate);
+			generator.setLazyDefinitions(lazyDefinitions);
+			generator.setSharedPrimitiveTypes(sharedPrimitiveTypes);
+			generator.setReadAhead(readAhead);
+			generator.setIncrementalUpdates(watch);
+			generator.setMetrics(metrics);
+			generator.launch(input);
+			long analyzed = System.nanoTime();
+			// The model is saved by this thread, so models are written in parallel
+			result.output.delete();
+			generator.saveModel(result.output);
+			result.analysisTime = (analyzed - start) / 1000000;
+			result.saveTime = (System.nanoTime() - analyzed) / 1000000;
+			if(!result.output.isFile())
+				throw new JSONSchemaToUMLException("The model could not be saved in " + result.output.getPath());
+			if(watch) {
+				result.generator = generator;
+				result.worker = worker;
+			}
+		} catch (RuntimeException e) {
+			result.error = e;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the name of an input without extension
+	 */
+	private static String baseName(File input) {
+		String name = input.getAbsoluteFile().toPath().normalize().toFile().getName();
+		if(name.lastIndexOf('.') > 0)
+			name = name.substring(0, name.lastIndexOf('.'));
+		return name;
+	}
+}
@@ -0,0 +1,72 @@
+package edu.uoc.som.jsonschematouml.generators;
+
+/**
+ * The canonical URI of an element of a schema, i.e., the URI of its scope, "#" and its JSON Pointer in the
+ * scope (see {@link JSONPointer}). It is used as key of the {@link JSONSchemaToUML#referenceIndex}.
+ *
+ * The string is only built on demand: URIs are compared (and hashed) as their strings are, so the URIs of the
+ * elements found while traversing a schema and the ones given as strings (e.g., the target of a reference)
+ * can be looked up in the same index.
+ */
+final class CanonicalURI {
+	/**
+	 * The string the pointer is appended to
+	 */
+	private final String prefix;
+	/**
+	 * The pointer
+	 */
+	private final JSONPointer pointer;
+	/**
+	 * The hash code of the string of the URI (see {@link String#hashCode()})
+	 */
+	private final int hash;
+
+	private CanonicalURI(String prefix, JSONPointer pointer) {
+		this.prefix = prefix;
+		this.pointer = pointer;
+		this.hash = pointer.hashCode(prefix);
+	}
+
+	/**
+	 * Returns a canonical URI given as a string
+	 *
+	 * @param uri The URI (e.g., the target of a reference)
+	 * @return The canonical URI
+	 */
+	static CanonicalURI of(String uri) {
+		return new CanonicalURI(uri, JSONPointer.EMPTY);
+	}
+
+	/**
+	 * Returns the canonical URI of an element
+	 *
+	 * @param scopeURI The URI of the scope of the element (e.g., the base URI)
+	 * @param pointer The JSON Pointer of the element in the scope
+	 * @return The canonical URI
+	 */
+	static CanonicalURI of(String scopeURI, JSONPointer pointer) {
+		return new CanonicalURI(scopeURI + "#", pointer);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if(this == obj)
+			return true;
+		if(!(obj instanceof CanonicalURI))
+			return false;
+		CanonicalURI other = (CanonicalURI) obj;
+		return hash == other.hash && prefix.length() + pointer.length() == other.prefix.length() + other.pointer.length()
+				&& toString().equals(other.toString());
+	}
+
+	@Override
+	public String toString() {
+		return prefix + pointer;
+	}
+}
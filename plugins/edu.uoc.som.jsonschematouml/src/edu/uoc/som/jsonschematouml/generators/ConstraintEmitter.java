@@ -0,0 +1,163 @@
+package edu.uoc.som.jsonschematouml.generators;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+
+import org.eclipse.uml2.uml.Class;
+import org.eclipse.uml2.uml.Constraint;
+import org.eclipse.uml2.uml.OpaqueExpression;
+import org.eclipse.uml2.uml.UMLFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Creates the OCL constraints of the classes found by {@link JSONSchemaToUML} (e.g., the maximum length of
+ * a string property) in batches.
+ *
+ * The bodies of the constraints are written from templates (see {@link Template}) into a single buffer, and the
+ * constraints are kept per class until {@link #flush()} adds all the ones of each class at once. Constraints
+ * (and their expressions) are built with notifications disabled, and so is the class while they are added:
+ * the UML2 adapters of the model would otherwise handle several notifications per constraint.
+ */
+class ConstraintEmitter {
+	/**
+	 * The OCL constraints the schema keywords are resolved as. The body of a constraint is "self.", the name
+	 * of the property, the operator, the value of the keyword and the suffix
+	 */
+	enum Template {
+		/**
+		 * Section 6.3.1 in json-schema-validation
+		 */
+		MAX_LENGTH("maxLength", ".size() <= ", ""),
+		/**
+		 * Section 6.3.2 in json-schema-validation
+		 */
+		MIN_LENGTH("minLength", ".size() >= ", ""),
+		/**
+		 * Section 6.2.1 in json-schema-validation
+		 */
+		MULTIPLE_OF("multipleOf", ".div(", ") = 0"),
+		/**
+		 * Section 6.2.2 in json-schema-validation
+		 */
+		MAXIMUM("maximum", " <= ", ""),
+		/**
+		 * Section 6.2.3 in json-schema-validation
+		 */
+		EXCLUSIVE_MAXIMUM("exclusiveMaximum", " < ", ""),
+		/**
+		 * Section 6.2.4 in json-schema-validation
+		 */
+		MINIMUM("minimum", " >= ", ""),
+		/**
+		 * Section 6.2.5 in json-schema-validation
+		 */
+		EXCLUSIVE_MINIMUM("exclusiveMinimum", " > ", "");
+
+		/**
+		 * The keyword of the schema
+		 */
+		final String keyword;
+		/**
+		 * The type of the constraint (part of its name)
+		 */
+		final String constraintType;
+		private final String operator;
+		private final String suffix;
+
+		private Template(String keyword, String operator, String suffix) {
+			this.keyword = keyword;
+			this.constraintType = keyword + "Constraint";
+			this.operator = operator;
+			this.suffix = suffix;
+		}
+	}
+
+	/**
+	 * The constraints of string properties, in order of creation
+	 */
+	static final Template[] STRING_TEMPLATES = { Template.MAX_LENGTH, Template.MIN_LENGTH };
+	/**
+	 * The constraints of numeric properties, in order of creation
+	 */
+	static final Template[] NUMERIC_TEMPLATES = { Template.MULTIPLE_OF, Template.MAXIMUM, Template.EXCLUSIVE_MAXIMUM,
+			Template.MINIMUM, Template.EXCLUSIVE_MINIMUM };
+
+	/**
+	 * The buffer the names and bodies of the constraints are written into
+	 */
+	private final StringBuilder buffer = new StringBuilder();
+
+	/**
+	 * The constraints not added yet, per class (in order of creation)
+	 */
+	private final LinkedHashMap<Class, List<Constraint>> pending = new LinkedHashMap<>();
+
+	/**
+	 * Creates the constraints of a property for the keywords of the given templates found in its schema
+	 *
+	 * @param concept The class the property belongs to
+	 * @param propertyName The name of the property
+	 * @param object The schema of the property
+	 * @param templates The templates of the constraints to look for
+	 */
+	void emit(Class concept, String propertyName, JsonNode object, Template[] templates) {
+		for(Template template : templates) {
+			JsonNode value = object.get(template.keyword);
+			if(value != null)
+				emit(concept, propertyName, template, value.asText());
+		}
+	}
+
+	/**
+	 * Creates a constraint of a property. It is added to the class on the next {@link #flush()}
+	 *
+	 * @param concept The class the property belongs to
+	 * @param propertyName The name of the property
+	 * @param template The template of the constraint
+	 * @param value The value of the keyword
+	 */
+	void emit(Class concept, String propertyName, Template template, String value) {
+		Constraint constraint = UMLFactory.eINSTANCE.createConstraint();
+		constraint.eSetDeliver(false);
+		buffer.setLength(0);
+		buffer.append(concept.getName()).append('-').append(propertyName).append('-').append(template.constraintType);
+		constraint.setName(buffer.toString());
+		OpaqueExpression expression = UMLFactory.eINSTANCE.createOpaqueExpression();
+		expression.eSetDeliver(false);
+		expression.getLanguages().add("OCL");
+		buffer.setLength(0);
+		buffer.append("self.").append(propertyName).append(template.operator).append(value).append(template.suffix);
+		expression.getBodies().add(buffer.toString());
+		constraint.setSpecification(expression);
+		expression.eSetDeliver(true);
+
+		List<Constraint> constraints = pending.get(concept);
+		if(constraints == null) {
+			constraints = new ArrayList<>();
+			pending.put(concept, constraints);
+		}
+		constraints.add(constraint);
+	}
+
+	/**
+	 * Adds the constraints created since the last flush to their classes
+	 */
+	void flush() {
+		for(Entry<Class, List<Constraint>> entry : pending.entrySet()) {
+			Class concept = entry.getKey();
+			boolean deliver = concept.eDeliver();
+			concept.eSetDeliver(false);
+			try {
+				concept.getOwnedRules().addAll(entry.getValue());
+			} finally {
+				concept.eSetDeliver(deliver);
+			}
+			for(Constraint constraint : entry.getValue())
+				constraint.eSetDeliver(true);
+		}
+		pending.clear();
+	}
+}
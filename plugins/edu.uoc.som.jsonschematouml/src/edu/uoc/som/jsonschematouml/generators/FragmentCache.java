@@ -0,0 +1,190 @@
+package edu.uoc.som.jsonschematouml.generators;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.BinaryResourceImpl;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.uml2.uml.UMLPackage;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.fge.jackson.JacksonUtils;
+
+import edu.uoc.som.jsonschematouml.validator.ValidationCache;
+import edu.uoc.som.jsonschematouml.validator.ValidationLevel;
+
+/**
+ * Persistent cache for the fragments created when analyzing each file in the incremental mode of
+ * {@link JSONSchemaToUML}.
+ *
+ * Each analyzed file has an entry in the cache folder made of two files: the UML elements of the fragment
+ * (stored as an EMF binary resource, which is much faster to load than XMI) and a manifest (stored as JSON) with the digest of the contents of the file and the
+ * information needed to link the fragment with the rest of the model. An entry is only used if the digest
+ * of the file is the same, and the file is read in the same mode (streaming or in memory) and validated with the
+ * same level (a file which is not valid with a level may have been analyzed with a lower one), otherwise the file
+ * is analyzed again and the entry replaced.
+ *
+ * Entries of different files can be read/written concurrently.
+ */
+class FragmentCache {
+	/**
+	 * The version of the format of the entries. Entries with a different version are ignored
+	 */
+	private static final int VERSION = 5;
+
+	/**
+	 * The mapper used to read/write the manifests
+	 */
+	private static final ObjectMapper MAPPER = JacksonUtils.newMapper();
+
+	/**
+	 * The folder where the entries are stored
+	 */
+	private File folder;
+
+	FragmentCache(File folder) {
+		if(!folder.isDirectory() && !folder.mkdirs())
+			throw new JSONSchemaToUMLException("Unable to create the cache folder " + folder.getAbsolutePath());
+		this.folder = folder;
+	}
+
+	/**
+	 * Computes the digest of the contents of a file
+	 *
+	 * @param file The file
+	 * @return The digest (as an hexadecimal string)
+	 * @throws IOException
+	 */
+	String digest(File file) throws IOException {
+		return ValidationCache.digest(file);
+	}
+
+	/**
+	 * Returns the manifest of the entry of a file
+	 *
+	 * @param file The analyzed file
+	 * @param digest The digest of the current contents of the file
+	 * @param streamed Whether the file is read in streaming mode
+	 * @param validationLevel The level with which the file is validated
+	 * @return The manifest (null if there is no entry or it is outdated)
+	 * @throws IOException
+	 */
+	JsonNode loadManifest(File file, String digest, boolean streamed, ValidationLevel validationLevel) throws IOException {
+		File manifestFile = entryFile(file, ".json");
+		if(!manifestFile.isFile())
+			return null;
+		JsonNode manifest = MAPPER.readTree(manifestFile);
+		if(manifest.path("version").asInt() != VERSION
+				|| !manifest.path("file").asText().equals(file.getAbsolutePath())
+				|| !manifest.path("digest").asText().equals(digest)
+				|| manifest.path("streamed").asBoolean() != streamed
+				|| !manifest.path("validationLevel").asText().equals(validationLevel.name()))
+			return null;
+		return manifest;
+	}
+
+	/**
+	 * Reads the contents of the UML elements of the entry of a file, without creating them (see {@link #loadElements(File, byte[])})
+	 *
+	 * @param file The analyzed file
+	 * @return The contents of the elements
+	 * @throws IOException
+	 */
+	byte[] readElements(File file) throws IOException {
+		return Files.readAllBytes(entryFile(file, ".bin").toPath());
+	}
+
+	/**
+	 * Loads the UML elements of the entry of a file
+	 *
+	 * @param file The analyzed file
+	 * @param elements The contents of the elements (see {@link #readElements(File)})
+	 * @return The resource including the elements
+	 * @throws IOException
+	 */
+	Resource loadElements(File file, byte[] elements) throws IOException {
+		Resource resource = newResource(file);
+		resource.load(new ByteArrayInputStream(elements), null);
+		return resource;
+	}
+
+	/**
+	 * Stores the entry of a file. The elements are stored first, so an interrupted write never results in
+	 * a manifest pointing to wrong elements.
+	 *
+	 * @param file The analyzed file
+	 * @param digest The digest of the contents of the file
+	 * @param streamed Whether the file was read in streaming mode
+	 * @param validationLevel The level with which the file was validated
+	 * @param resource The resource created with {@link #newResource(File, Collection)} including the elements of the fragment
+	 * @param manifest The manifest of the fragment
+	 * @throws IOException
+	 */
+	void store(File file, String digest, boolean streamed, ValidationLevel validationLevel, Resource resource, ObjectNode manifest) throws IOException {
+		resource.save(null);
+		manifest.put("version", VERSION);
+		manifest.put("file", file.getAbsolutePath());
+		manifest.put("digest", digest);
+		manifest.put("streamed", streamed);
+		manifest.put("validationLevel", validationLevel.name());
+		MAPPER.writeValue(entryFile(file, ".json"), manifest);
+	}
+
+	/**
+	 * Creates the resource to hold the elements of the entry of a file
+	 *
+	 * @param file The analyzed file
+	 * @param contents The root elements of the fragment
+	 * @return The resource
+	 */
+	Resource newResource(File file, Collection<? extends EObject> contents) {
+		Resource resource = newResource(file);
+		resource.getContents().addAll(contents);
+		return resource;
+	}
+
+	private Resource newResource(File file) {
+		ResourceSet resourceSet = new ResourceSetImpl();
+		resourceSet.getPackageRegistry().put(UMLPackage.eNS_URI, UMLPackage.eINSTANCE);
+		Resource resource = new BinaryResourceImpl(URI.createFileURI(entryFile(file, ".bin").getAbsolutePath()));
+		resourceSet.getResources().add(resource);
+		return resource;
+	}
+
+	/**
+	 * Returns the file of the entry of a file, named after the digest of its path
+	 */
+	private File entryFile(File file, String extension) {
+		byte[] path = file.getAbsolutePath().getBytes(StandardCharsets.UTF_8);
+		return new File(folder, toHex(newMessageDigest().digest(path)) + extension);
+	}
+
+	private static MessageDigest newMessageDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new JSONSchemaToUMLException("SHA-256 is not available", e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder result = new StringBuilder(bytes.length * 2);
+		for(byte b : bytes) {
+			result.append(Character.forDigit((b >> 4) & 0xF, 16));
+			result.append(Character.forDigit(b & 0xF, 16));
+		}
+		return result.toString();
+	}
+}
@@ -0,0 +1,118 @@
+package edu.uoc.som.jsonschematouml.generators;
+
+/**
+ * A JSON Pointer (cf. RFC 6901), as built by {@link JSONSchemaToUML} while traversing a schema: the pointer of
+ * an element is the pointer of its parent followed by some reference tokens (e.g., "/properties/name").
+ *
+ * The pointer of the parent is shared instead of copied, so the pointers of a chain of nested elements take space
+ * linear in its depth (their strings would take quadratic space). The string is only built on demand, and the hash
+ * code is the one of the string (computed as the pointer is built).
+ */
+final class JSONPointer {
+	/**
+	 * The empty pointer, i.e., the one of the root of a scope
+	 */
+	static final JSONPointer EMPTY = new JSONPointer(null, "");
+
+	/**
+	 * The pointer this one extends (null for the empty pointer)
+	 */
+	private final JSONPointer parent;
+	/**
+	 * The reference tokens appended to the parent (already escaped)
+	 */
+	private final String tokens;
+	/**
+	 * The length of the string of the pointer
+	 */
+	private final int length;
+	/**
+	 * The hash code of the string of the pointer (see {@link String#hashCode()})
+	 */
+	private final int hash;
+	/**
+	 * 31 to the power of {@link #length}, used to compute the hash codes of strings ending with this pointer
+	 */
+	private final int power;
+
+	private JSONPointer(JSONPointer parent, String tokens) {
+		this.parent = parent;
+		this.tokens = tokens;
+		int power = 1;
+		for(int i = 0; i < tokens.length(); i++)
+			power *= 31;
+		if(parent == null) {
+			this.length = tokens.length();
+			this.hash = tokens.hashCode();
+			this.power = power;
+		} else {
+			this.length = parent.length + tokens.length();
+			this.hash = parent.hash * power + tokens.hashCode();
+			this.power = parent.power * power;
+		}
+	}
+
+	/**
+	 * Returns a pointer given as a string
+	 *
+	 * @param pointer The pointer (e.g., "/definitions/address")
+	 * @return The pointer
+	 */
+	static JSONPointer of(String pointer) {
+		return pointer.isEmpty() ? EMPTY : new JSONPointer(null, pointer);
+	}
+
+	/**
+	 * Returns the pointer of a child element
+	 *
+	 * @param tokens The reference tokens of the child (already escaped), e.g., "/properties/name"
+	 * @return The pointer
+	 */
+	JSONPointer append(String tokens) {
+		return new JSONPointer(this, tokens);
+	}
+
+	/**
+	 * Computes the hash code of the string made of a prefix and this pointer, as {@link String#hashCode()} does
+	 *
+	 * @param prefix The prefix (e.g., the base URI and "#")
+	 * @return The hash code
+	 */
+	int hashCode(String prefix) {
+		return prefix.hashCode() * power + hash;
+	}
+
+	/**
+	 * Returns the length of the string of the pointer
+	 *
+	 * @return The length
+	 */
+	int length() {
+		return length;
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if(this == obj)
+			return true;
+		if(!(obj instanceof JSONPointer))
+			return false;
+		JSONPointer other = (JSONPointer) obj;
+		return length == other.length && hash == other.hash && toString().equals(other.toString());
+	}
+
+	@Override
+	public String toString() {
+		if(parent == null)
+			return tokens;
+		char[] chars = new char[length];
+		for(JSONPointer pointer = this; pointer != null; pointer = pointer.parent)
+			pointer.tokens.getChars(0, pointer.tokens.length(), chars, pointer.length - pointer.tokens.length());
+		return new String(chars);
+	}
+}
@@ -1,42 +1,82 @@
 package edu.uoc.som.jsonschematouml.generators;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
 
+import org.eclipse.emf.common.util.EList;
+import org.eclipse.emf.common.util.TreeIterator;
 import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.BinaryResourceImpl;
 import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.xmi.XMLResource;
+import org.eclipse.uml2.common.util.CacheAdapter;
 import org.eclipse.uml2.uml.AggregationKind;
 import org.eclipse.uml2.uml.Association;
 import org.eclipse.uml2.uml.Class;
 import org.eclipse.uml2.uml.Comment;
-import org.eclipse.uml2.uml.Constraint;
 import org.eclipse.uml2.uml.Element;
 import org.eclipse.uml2.uml.Enumeration;
+import org.eclipse.uml2.uml.Generalization;
 import org.eclipse.uml2.uml.Model;
-import org.eclipse.uml2.uml.OpaqueExpression;
 import org.eclipse.uml2.uml.Package;
+import org.eclipse.uml2.uml.PackageableElement;
 import org.eclipse.uml2.uml.PrimitiveType;
 import org.eclipse.uml2.uml.Property;
 import org.eclipse.uml2.uml.Type;
+import org.eclipse.uml2.uml.TypedElement;
 import org.eclipse.uml2.uml.UMLFactory;
 import org.eclipse.uml2.uml.UMLPackage;
 import org.eclipse.uml2.uml.resource.UMLResource;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.github.fge.jackson.JacksonUtils;
 import com.github.fge.jsonschema.core.exceptions.ProcessingException;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
-import com.google.gson.JsonPrimitive;
-import com.google.gson.stream.JsonReader;
 
+import edu.uoc.som.jsonschematouml.generators.TransformationMetrics.Counter;
+import edu.uoc.som.jsonschematouml.generators.TransformationMetrics.Phase;
+import edu.uoc.som.jsonschematouml.validator.JSONDocument;
 import edu.uoc.som.jsonschematouml.validator.JSONSchemaValidator;
+import edu.uoc.som.jsonschematouml.validator.ValidationCache;
+import edu.uoc.som.jsonschematouml.validator.ValidationLevel;
 
 /**
  * Entry point for the JSONSchemaToUML tool. You should use this class as a faade for everything provided by the tool.
@@ -54,6 +94,26 @@ public class JSONSchemaToUML {
 	 */
 	public static String DEFAULT_MODEL_NAME = "test";
 
+	/**
+	 * The default size (in bytes) from which files are read in streaming mode
+	 */
+	public static final long DEFAULT_STREAMING_THRESHOLD = 16 * 1024 * 1024;
+
+	/**
+	 * The size (in bytes) of the buffers used to save the models
+	 */
+	private static final int SAVE_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * The mapper used to read the subtrees of the files read in streaming mode
+	 */
+	private static final ObjectMapper MAPPER = JacksonUtils.newMapper();
+
+	/**
+	 * The keywords found when computing the canonical form of a sub-schema (see {@link #canonicalize(JsonNode, StringBuilder)})
+	 */
+	private static final int REF_KEYWORD = 1, ID_KEYWORD = 2;
+
 	/**
 	 * This class is used to represent proxy associations (i.e., the type will be resolved later)
 	 *
@@ -79,6 +139,220 @@ public class JSONSchemaToUML {
 		 * Cardinalities
 		 */
 		int sourceUpper, sourceLower, targetUpper, targetLower;
+		/**
+		 * The reference to the target class (as written in the schema)
+		 */
+		JSONSchemaURI ref;
+		/**
+		 * The canonical URI of the target class (see {@link JSONSchemaToUML#reference(String)})
+		 */
+		String target;
+	}
+
+	/**
+	 * This class is used to represent proxy superclasses (i.e., the superclass will be resolved later)
+	 *
+	 */
+	class ProxySuperclass {
+		/**
+		 * The class which has the superclass
+		 */
+		Class subclass;
+		/**
+		 * The reference to the superclass (as written in the schema)
+		 */
+		JSONSchemaURI ref;
+		/**
+		 * The canonical URI of the superclass (see {@link JSONSchemaToUML#reference(String)})
+		 */
+		String target;
+	}
+
+	/**
+	 * This class is used to represent the types created for sub-schemas when the structural deduplication
+	 * is enabled (see {@link JSONSchemaToUML#setStructuralDeduplication(boolean)})
+	 *
+	 */
+	class StructuralType {
+		/**
+		 * The class/enumeration created for the sub-schema
+		 */
+		Type type;
+		/**
+		 * The elements created when analyzing the sub-schema (including the type), in order of creation
+		 */
+		List<PackageableElement> elements;
+	}
+
+	/**
+	 * This class is used to represent the canonical form of a node of the schema being analyzed when the structural
+	 * deduplication is enabled (see {@link JSONSchemaToUML#canonicalize(JsonNode)})
+	 *
+	 */
+	class CanonicalNode {
+		/**
+		 * The digest of the canonical form of the node
+		 */
+		String digest;
+		/**
+		 * Whether the node includes references ({@link JSONSchemaToUML#REF_KEYWORD}) and/or ids ({@link JSONSchemaToUML#ID_KEYWORD})
+		 */
+		int keywords;
+	}
+
+	/**
+	 * This class is used to keep the result of reading a file, before its elements are created 
+	 * (see {@link JSONSchemaToUML#prepareFile(File)}). It holds no UML element, so files can be prepared
+	 * by other threads
+	 *
+	 */
+	class PreparedFile {
+		/**
+		 * The file
+		 */
+		File file;
+		/**
+		 * The digest of the contents of the file (only in incremental mode)
+		 */
+		String digest;
+		/**
+		 * The root element of the file, parsed and validated (null if the file is not valid or it was not read in memory)
+		 */
+		JsonNode rootElement;
+		/**
+		 * The manifest of the entry of the file in the cache, if the file has not changed since it was stored
+		 */
+		JsonNode manifest;
+		/**
+		 * The contents of the elements of the entry of the file in the cache (only if there is a manifest)
+		 */
+		byte[] elements;
+		/**
+		 * Whether the file is read in streaming mode (see {@link JSONSchemaToUML#analyzeStream(File)})
+		 */
+		boolean streamed;
+		/**
+		 * The time spent (in nanoseconds) preparing the file (only if the metrics are enabled)
+		 */
+		long time;
+	}
+
+	/**
+	 * The events of the pipelined ingestion (see {@link JSONSchemaToUML#setReadAhead(int)}), in the order of the traversal
+	 */
+	enum IngestionEvent { ENTER_FOLDER, FILE, LEAVE_FOLDER, END }
+
+	/**
+	 * This class is used to pass the files found in the pipelined ingestion to the analysis
+	 *
+	 */
+	class IngestedItem {
+		/**
+		 * The event
+		 */
+		IngestionEvent event;
+		/**
+		 * The file/folder
+		 */
+		File file;
+		/**
+		 * The file being prepared (only for files)
+		 */
+		Future<PreparedFile> prepared;
+		/**
+		 * The error found while traversing the folders (only for the end)
+		 */
+		RuntimeException error;
+	}
+
+	/**
+	 * This class is used to represent the definitions not materialized yet when the lazy definitions are 
+	 * enabled (see {@link JSONSchemaToUML#setLazyDefinitions(boolean)})
+	 *
+	 */
+	class PendingDefinition {
+		/**
+		 * The name of the definition
+		 */
+		String name;
+		/**
+		 * The definition
+		 */
+		JsonNode definition;
+		/**
+		 * The JSON Pointer of the definition in its scope
+		 */
+		JSONPointer pointer;
+		/**
+		 * The base URI and the URI of the document of the scope of the definition (see {@link JSONSchemaToUML#baseURI})
+		 */
+		String baseURI, documentURI;
+		/**
+		 * The package where the definition is materialized
+		 */
+		Package umlPackage;
+		/**
+		 * Whether the definition was already materialized
+		 */
+		boolean materialized;
+	}
+
+	/**
+	 * This class is used to keep the elements created for each file/folder when the incremental updates are 
+	 * enabled (see {@link JSONSchemaToUML#setIncrementalUpdates(boolean)}), so they can be replaced when the file changes
+	 *
+	 */
+	class AnalyzedItem {
+		/**
+		 * The file/folder
+		 */
+		File file;
+		/**
+		 * Whether it is a folder
+		 */
+		boolean folder;
+		/**
+		 * The package including the elements
+		 */
+		Package umlPackage;
+		/**
+		 * The elements created for the file (for a folder, its package), in order of creation
+		 */
+		List<PackageableElement> elements;
+		/**
+		 * The concepts created for the file, by name and by canonical URI (see {@link JSONSchemaToUML#oracle} and {@link JSONSchemaToUML#referenceIndex})
+		 */
+		HashMap<String, Class> oracle;
+		HashMap<CanonicalURI, Class> referenceIndex;
+		/**
+		 * The references found in the file
+		 */
+		List<ProxyAssociation> associations;
+		List<ProxySuperclass> superclasses;
+		/**
+		 * The names of the primitive types used in the file
+		 */
+		List<String> primitiveTypes;
+	}
+
+	/**
+	 * This class is used to keep track of the analysis of a file/folder. Files are prepared (in parallel if an
+	 * executor is set) and analyzed into fragments, which are merged into the model following the order of the traversal
+	 *
+	 */
+	class PendingAnalysis {
+		/**
+		 * The file/folder to analyze
+		 */
+		File file;
+		/**
+		 * The file being prepared by the executor (only for files)
+		 */
+		Future<PreparedFile> prepared;
+		/**
+		 * The analysis of the contents of the folder (only for folders)
+		 */
+		List<PendingAnalysis> children;
 	}
 
 	/**
@@ -87,23 +361,86 @@ public class JSONSchemaToUML {
 	 */
 	HashMap<String, Class> oracle = new HashMap<>();
 
+	/**
+	 * The index of the concepts created, keyed by the canonical URI of the schema element they come from
+	 * (i.e., the absolute URI of the schema, after resolving the ids found, plus the JSON Pointer of the element).
+	 * References are resolved with this index, the {@link #oracle} is only used when they are not found here.
+	 */
+	HashMap<CanonicalURI, Class> referenceIndex = new HashMap<>();
+
 	/**
 	 * The references to classes used as superclasses found during the analysis
 	 * (to be later resolved by {@link #resolveSuperclasses()}
 	 */
-	HashMap<JSONSchemaURI, Class> superclassesFound = new HashMap<>();
+	ArrayList<ProxySuperclass> superclassesFound = new ArrayList<>();
 
 	/**
 	 * The references to classes used in associations found during the analysis
 	 * (to be later resolved by {@link #resolveAssociations()}
 	 */
-	HashMap<JSONSchemaURI, ProxyAssociation> associationsFound = new HashMap<>();
+	ArrayList<ProxyAssociation> associationsFound = new ArrayList<>();
+
+	/**
+	 * The attributes of the classes created during the analysis, indexed by name (only the first one
+	 * created with a given name is indexed). Used to look up the attributes without traversing the owned attributes
+	 * of the class (e.g., in wide objects with thousands of properties)
+	 */
+	HashMap<Class, HashMap<String, Property>> attributeIndex = new HashMap<>();
+
+	/**
+	 * The types created for inline sub-schemas (objects, items of arrays and enumerations), keyed by the digest of
+	 * their canonical form (see {@link #structuralKey(String, JsonNode)}). Only used if the structural deduplication is enabled
+	 */
+	LinkedHashMap<String, StructuralType> structuralTypes = new LinkedHashMap<>();
+
+	/**
+	 * The canonical forms of the nodes of the schema being traversed, keyed by node (identity), so the form of each
+	 * node is computed once whatever the number of sub-schemas including it (see {@link #canonicalize(JsonNode)}).
+	 * Only used if the structural deduplication is enabled, and cleared once the traversal ends
+	 */
+	IdentityHashMap<JsonNode, CanonicalNode> canonicalNodes = new IdentityHashMap<>();
+
+	/**
+	 * The definitions not materialized yet, in order of discovery. Only used if the lazy definitions are enabled
+	 */
+	ArrayList<PendingDefinition> pendingDefinitions = new ArrayList<>();
+
+	/**
+	 * The index of the {@link #pendingDefinitions}, keyed by the canonical URI of the definition (as the {@link #referenceIndex})
+	 */
+	HashMap<String, PendingDefinition> pendingIndex = new HashMap<>();
+
+	/**
+	 * The index of the {@link #pendingDefinitions} by name (the last one found with a given name, as the {@link #oracle})
+	 */
+	HashMap<String, PendingDefinition> pendingNames = new HashMap<>();
+
+	/**
+	 * The packages created for the folders traversed (in the order of the traversal, so parents come first)
+	 */
+	ArrayList<Package> folderPackages = new ArrayList<>();
+
+	/**
+	 * The files and folders analyzed, in the order of the traversal. Only kept if the incremental updates are enabled
+	 */
+	ArrayList<AnalyzedItem> analyzedItems = new ArrayList<>();
+
+	/**
+	 * The associations and generalizations created when resolving the references found. Only kept if the incremental updates are enabled
+	 */
+	HashMap<ProxyAssociation, Association> resolvedAssociations = new HashMap<>();
+	HashMap<ProxySuperclass, Generalization> resolvedSuperclasses = new HashMap<>();
 
 	/**
 	 * As we will generate UML models, we use the Eclipse UML2 Factory
 	 */
 	private UMLFactory umlFactory;
 
+	/**
+	 * Creates the classes, attributes and associations of the model
+	 */
+	private final UMLElementFactory elementFactory = new UMLElementFactory();
+
 	/**
 	 * The resource set where the model will be stored. We keep it beacuse we have to
 	 * configure and customize some options
@@ -132,9 +469,96 @@ public class JSONSchemaToUML {
 	private Class unknown;
 
 	/**
-	 * Primitive types to be used in the model
+	 * The base URI used to resolve the ids and references of the element being analyzed (cf. Section 5.1 - RFC 3986)
+	 */
+	private String baseURI;
+
+	/**
+	 * The URI of the file being analyzed (null when analyzing an element in the scope of an inner id). Elements
+	 * are also indexed with this URI, so references relative to the location of the files can be resolved
+	 */
+	private String documentURI;
+
+	/**
+	 * The OCL constraints of the classes, added in batches once the traversal of each schema ends
+	 */
+	private ConstraintEmitter constraints = new ConstraintEmitter();
+
+	/**
+	 * The steps scheduled by the step of the analysis being run (see {@link #traverse(Runnable)})
+	 */
+	private List<Runnable> scheduledSteps;
+
+	/**
+	 * Primitive types to be used in the model (kept in order of creation)
+	 */
+	private LinkedHashMap<String, PrimitiveType> primitiveTypes = new LinkedHashMap<>();
+
+	/**
+	 * The executor used to analyze the files in parallel. If null, files are analyzed sequentially
+	 */
+	private ExecutorService executor;
+
+	/**
+	 * The number of files read ahead of the analysis in the pipelined ingestion (0 if disabled)
+	 */
+	private int readAhead;
+
+	/**
+	 * The size (in bytes) from which files are read in streaming mode
+	 */
+	private long streamingThreshold = DEFAULT_STREAMING_THRESHOLD;
+
+	/**
+	 * The level of validation of the files
+	 */
+	private ValidationLevel validationLevel = ValidationLevel.FULL;
+
+	/**
+	 * The cache of the results of the validation of the files. If null, files are always validated
+	 */
+	private ValidationCache validationCache;
+
+	/**
+	 * The cache of the fragments of the files analyzed. If null, the incremental mode is disabled
+	 */
+	private FragmentCache cache;
+
+	/**
+	 * If true, the types of structurally identical inline sub-schemas are created only once
+	 */
+	private boolean deduplicate;
+
+	/**
+	 * If true, definitions are only materialized when they are referenced
+	 */
+	private boolean lazyDefinitions;
+
+	/**
+	 * The metrics recorded during the transformation. If null, no metrics are recorded
+	 */
+	private TransformationMetrics metrics;
+
+	/**
+	 * If true, the model refers to the types of the UML primitive types library (see {@link #setSharedPrimitiveTypes(boolean)})
+	 */
+	private boolean sharedPrimitiveTypes;
+
+	/**
+	 * The lookup table of the XMI serializer ({@link XMLResource#OPTION_USE_CACHED_LOOKUP_TABLE}), kept between
+	 * the saves of the model so the features of each class are only looked up once. Created on the first save
+	 */
+	private List<Object> lookupTable;
+
+	/**
+	 * Whether the elements created for each file are kept to update the model (see {@link #update(File)})
 	 */
-	private HashMap<String, PrimitiveType> primitiveTypes = new HashMap<>();
+	private boolean incrementalUpdates;
+
+	/**
+	 * The file/folder of the last launch
+	 */
+	private File launchedFile;
 
 	/**
 	 * Delegated constructor, it calls the {@link JSONSchemaToUML} constructor and uses the
@@ -153,6 +577,26 @@ public class JSONSchemaToUML {
 		initModel(modelName);
 	}
 
+	/**
+	 * Constructor for fragments. A fragment analyzes a single file in isolation: the elements are created in a
+	 * detached package (and so the primitive types), which is later merged into the model of the parent by
+	 * {@link #merge(JSONSchemaToUML)}
+	 * 
+	 * @param parent The instance which will receive the fragment
+	 */
+	private JSONSchemaToUML(JSONSchemaToUML parent) {
+		umlFactory = parent.umlFactory;
+		resourceSet = parent.resourceSet;
+		model = parent.model;
+		unknown = parent.unknown;
+		deduplicate = parent.deduplicate;
+		lazyDefinitions = parent.lazyDefinitions;
+		validationLevel = parent.validationLevel;
+		metrics = parent.metrics;
+		umlPackage = umlFactory.createPackage();
+		rootPackage = umlFactory.createPackage();
+	}
+
 	/**
 	 * Returns the model being discovered
 	 * @return The model
@@ -162,95 +606,1402 @@ public class JSONSchemaToUML {
 	}
 
 	/**
-	 * Launches the tool to traverse a file/folder with JSON schemas and generate the corresponding UML models
-	 * @param inputFile The file to analyze (it can be a file or a folder, if folder, it will be recursively traversed)
+	 * Sets the executor used to read, parse and validate the files in parallel (e.g., a {@link java.util.concurrent.ForkJoinPool}).
+	 * The UML elements are still created by the thread which launches the tool, as UML2 records the inverse references of
+	 * every element in a single adapter shared by the whole JVM (see {@link CacheAdapter}), which is not thread-safe.
+	 * The resulting model is the same as in a sequential analysis, as the files are analyzed and merged in the order
+	 * of the traversal. If null (the default), the files are prepared sequentially.
+	 * 
+	 * @param executor The executor to use
 	 */
-	public void launch(File inputFile) {
-		if(inputFile == null || !inputFile.exists())
-			throw new JSONSchemaToUMLException("The file must exist");
-		analyze(inputFile);
-		resolveAssociations();
-		resolveSuperclasses();
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
 	}
 
 	/**
-	 * Initializates the target model (i.e., gives a name, creates some annotations) and configures the resource set
-	 * to use the propor UML primitive types
-	 * @param modelName The name of the model
+	 * Enables the pipelined ingestion of the files when they are analyzed sequentially (i.e., if there is no executor). A
+	 * thread traverses the folders and dispatches each file to be read, parsed and validated (or its entry of the cache read)
+	 * by I/O threads: virtual threads if the runtime supports them (Java 21+), otherwise a pool with as many threads as
+	 * files read ahead. The files are passed to the analysis through a bounded queue in the order of the traversal, so
+	 * waiting for the storage overlaps with the creation of the UML elements, while at most the given number of
+	 * files are kept in memory waiting to be analyzed. The resulting model is the same as in a sequential analysis.
+	 * If 0 (the default), the files are read by the thread which analyzes them.
+	 * 
+	 * @param readAhead The number of files read ahead of the analysis
 	 */
-	private void initModel(String modelName) {
-		// Creating the model
-		umlFactory = UMLFactory.eINSTANCE;
-		model = umlFactory.createModel();
-		model.setName(modelName);
+	public void setReadAhead(int readAhead) {
+		if(readAhead < 0)
+			throw new IllegalArgumentException("The number of files read ahead cannot be negative");
+		this.readAhead = readAhead;
+	}
 
-		// Configurating the resource set
-		resourceSet = new ResourceSetImpl();
-		resourceSet.getPackageRegistry().put(UMLPackage.eNS_URI, UMLPackage.eINSTANCE);
-		resourceSet.getResourceFactoryRegistry().getExtensionToFactoryMap().put(UMLResource.FILE_EXTENSION, UMLResource.Factory.INSTANCE);
+	/**
+	 * Sets the size (in bytes) from which files are read in streaming mode (see {@link #analyzeStream(File)}).
+	 * Use 0 to stream every file and {@link Long#MAX_VALUE} to never stream. By default, {@link #DEFAULT_STREAMING_THRESHOLD}.
+	 * 
+	 * @param streamingThreshold The size in bytes
+	 */
+	public void setStreamingThreshold(long streamingThreshold) {
+		if(streamingThreshold < 0)
+			throw new IllegalArgumentException("The streaming threshold cannot be negative");
+		this.streamingThreshold = streamingThreshold;
+	}
+
+	/**
+	 * Enables the incremental mode. The result of analyzing each file is stored in the cache folder (keyed by the 
+	 * path and the digest of the contents of the file), so further launches only analyze the files which have 
+	 * changed. The elements of the unchanged files are loaded from the cache and linked again with the rest of the model.
+	 * If null (the default), the incremental mode is disabled.
+	 * 
+	 * @param cacheFolder The folder where the cache is stored (it is created if it does not exist)
+	 */
+	public void setCacheFolder(File cacheFolder) {
+		this.cache = (cacheFolder == null) ? null : new FragmentCache(cacheFolder);
+	}
+
+	/**
+	 * Sets the level of validation of the files (by default, {@link ValidationLevel#FULL}). Files which are not
+	 * valid are skipped. Lower levels are faster, and can be used when the schemas were validated upstream.
+	 * 
+	 * @param validationLevel The level of validation
+	 */
+	public void setValidationLevel(ValidationLevel validationLevel) {
+		this.validationLevel = validationLevel;
+	}
+
+	/**
+	 * Sets the cache of the results of the validation (only used with the {@link ValidationLevel#FULL} level). Files whose contents were already validated (in this
+	 * or in a previous launch) are not validated again. The cache is saved at the end of each launch.
+	 * If null (the default), every file is validated.
+	 * 
+	 * @param validationCache The cache of the results of the validation
+	 */
+	public void setValidationCache(ValidationCache validationCache) {
+		this.validationCache = validationCache;
+	}
+
+	/**
+	 * Enables the structural deduplication. Inline sub-schemas (i.e., objects, items of arrays and enumerations
+	 * defined in place) which are structurally identical (i.e., the same keywords and values, in any order) are 
+	 * mapped into a single class/enumeration, which is reused by every property defined with them, in the same or in different files.
+	 * The type keeps the name given by the first property found. Sub-schemas including ids are never deduplicated, and those including 
+	 * references are only deduplicated if their references are resolved against the same base URI.
+	 * 
+	 * Within a file, the types are reused as soon as the sub-schema is found, so the duplicates are not even analyzed. Types
+	 * of different files are unified when the files are merged into the model (following the order of the traversal), so
+	 * the resulting model is the same whether the files are analyzed in parallel or not. By default, it is disabled.
+	 * 
+	 * @param deduplicate True to enable the structural deduplication
+	 */
+	public void setStructuralDeduplication(boolean deduplicate) {
+		this.deduplicate = deduplicate;
+	}
+
+	/**
+	 * Enables the lazy definitions. The entries of "definitions" are indexed but not mapped when the files are analyzed, 
+	 * and only those reached by a reference (directly or from other definitions reached) are mapped into classes, once every
+	 * file is analyzed. Definitions which are never referenced do not create any UML element, which saves time and memory
+	 * with large libraries of definitions of which each schema uses a few.
+	 * 
+	 * The classes of the definitions are created at the end of the package of their file, in the order they are reached. 
+	 * Definitions including ids (or whose sub-schemas include ids) are always mapped, as they can be referenced by their id, and so are the 
+	 * definitions of the files read in streaming mode (which are not kept in memory). By default, it is disabled.
+	 * 
+	 * @param lazyDefinitions True to enable the lazy definitions
+	 */
+	public void setLazyDefinitions(boolean lazyDefinitions) {
+		this.lazyDefinitions = lazyDefinitions;
+	}
+
+	/**
+	 * Enables the recording of metrics (see {@link TransformationMetrics}): the time spent in each phase of the
+	 * transformation, the elements added to the model, the references which could not be resolved and the time spent
+	 * analyzing each file. Metrics are accumulated in the given instance, which can be shared by several transformations. 
+	 * If null (the default), no metrics are recorded.
+	 * 
+	 * @param metrics The metrics where the transformation is recorded
+	 */
+	public void setMetrics(TransformationMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Returns the metrics where the transformation is recorded
+	 * @return The metrics (null if they are not recorded)
+	 */
+	public TransformationMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Enables the incremental updates of the model (see {@link #update(File)}). The elements created for each file, the
+	 * concepts it defines and the references it includes are kept once the model is built, so a file can be analyzed 
+	 * again and its elements replaced without analyzing the rest of the files. It must be set before launching the tool.
+	 * By default, it is disabled.
+	 * 
+	 * @param incrementalUpdates True to enable the incremental updates
+	 */
+	public void setIncrementalUpdates(boolean incrementalUpdates) {
+		this.incrementalUpdates = incrementalUpdates;
+	}
+
+	/**
+	 * Enables the shared primitive types. The attributes of the model are typed with the types of the UML primitive types library
+	 * ("pathmap://UML_LIBRARIES/UMLPrimitiveTypes.library.uml") instead of types created in the model, so the saved models refer
+	 * to the standard types, which Eclipse resolves. The library is loaded once per JVM and shared by the models of every
+	 * instance (outside Eclipse, it is loaded from the UML2 resources plugin); if it cannot be loaded, launching the tool
+	 * throws a {@link JSONSchemaToUMLException}. Types which are not in the library (i.e., "Date") are still created in the model.
+	 * By default, it is disabled.
+	 * 
+	 * @param sharedPrimitiveTypes True to enable the shared primitive types
+	 */
+	public void setSharedPrimitiveTypes(boolean sharedPrimitiveTypes) {
+		this.sharedPrimitiveTypes = sharedPrimitiveTypes;
+	}
+
+	/**
+	 * Launches the tool to traverse a file/folder with JSON schemas and generate the corresponding UML models
+	 * @param inputFile The file to analyze (it can be a file or a folder, if folder, it will be recursively traversed)
+	 */
+	public void launch(File inputFile) {
+		if(inputFile == null || !inputFile.exists())
+			throw new JSONSchemaToUMLException("The file must exist");
+		launchedFile = inputFile;
+		analyze(inputFile);
+		materializeDefinitions();
+		long start = startTimer();
+		resolveAssociations();
+		stopTimer(Phase.RESOLVE_ASSOCIATIONS, start);
+		start = startTimer();
+		resolveSuperclasses();
+		stopTimer(Phase.RESOLVE_SUPERCLASSES, start);
+		if(validationCache != null) {
+			try {
+				validationCache.save();
+			} catch (IOException e) {
+				System.err.println("The validation cache could not be written");
+			}
+		}
+		if(metrics != null)
+			metrics.launchCompleted();
+	}
+
+	/**
+	 * Starts measuring the time of a phase (only if the metrics are enabled)
+	 * 
+	 * @return The current time in nanoseconds (0 if the metrics are disabled)
+	 */
+	private long startTimer() {
+		return (metrics == null) ? 0 : System.nanoTime();
+	}
+
+	/**
+	 * Records the time spent in a phase (only if the metrics are enabled)
+	 * 
+	 * @param phase The phase
+	 * @param start The value returned by {@link #startTimer()} when the phase started
+	 * @return The time spent in nanoseconds (0 if the metrics are disabled)
+	 */
+	private long stopTimer(Phase phase, long start) {
+		if(metrics == null)
+			return 0;
+		long elapsed = System.nanoTime() - start;
+		metrics.record(phase, elapsed);
+		return elapsed;
+	}
+
+	/**
+	 * Initializates the target model (i.e., gives a name, creates some annotations) and configures the resource set
+	 * to use the propor UML primitive types
+	 * @param modelName The name of the model
+	 */
+	private void initModel(String modelName) {
+		// Creating the model
+		umlFactory = UMLFactory.eINSTANCE;
+		model = umlFactory.createModel();
+		model.setName(modelName);
+
+		// Configurating the resource set
+		resourceSet = new ResourceSetImpl();
+		resourceSet.getPackageRegistry().put(UMLPackage.eNS_URI, UMLPackage.eINSTANCE);
+		resourceSet.getResourceFactoryRegistry().getExtensionToFactoryMap().put(UMLResource.FILE_EXTENSION, UMLResource.Factory.INSTANCE);
+
+		// Main package
+		umlPackage = model.createNestedPackage(modelName);
+		rootPackage = umlPackage;
+
+		// Class to reuse when something goes wrong
+		unknown = umlPackage.createOwnedClass("Unknown", false);
+
+	}
+
+	/**
+	 * Analyzes a fodler/file. If it is a folder, it recursively navigates to find the files.
+	 * Each inner folder becomes a UML package.
+	 * 
+	 * @param inputFile A Folder or a file to analyze.
+	 */
+	private void analyze(File inputFile) {
+		if(executor == null && readAhead > 0)
+			ingest(inputFile);
+		else
+			collect(schedule(inputFile));
+	}
+
+	/**
+	 * Traverses a folder/file and schedules the preparation of the files found (if an executor is set).
+	 * Folders are traversed in alphabetical order, so the resulting model does not depend on the file system.
+	 * 
+	 * @param inputFile A Folder or a file to analyze.
+	 * @return The pending analysis
+	 */
+	private PendingAnalysis schedule(File inputFile) {
+		PendingAnalysis pending = new PendingAnalysis();
+		pending.file = inputFile;
+		if(inputFile.isFile()) {
+			if(executor != null)
+				pending.prepared = executor.submit(() -> prepareFile(inputFile));
+		} else if(inputFile.isDirectory()) {
+			pending.children = new ArrayList<>();
+			for(File inFile : listFiles(inputFile))
+				pending.children.add(schedule(inFile));
+		} else
+			throw new JSONSchemaToUMLException("Invalid input");
+		return pending;
+	}
+
+	/**
+	 * Collects the result of a pending analysis and merges it into the model. Files are analyzed here, once
+	 * they are prepared (by this thread if there is no executor). Each inner folder becomes a UML package.
+	 * 
+	 * @param pending The pending analysis
+	 */
+	private void collect(PendingAnalysis pending) {
+		if(pending.children == null) {
+			PreparedFile prepared = null;
+			if(pending.prepared == null) {
+				prepared = prepareFile(pending.file);
+			} else {
+				prepared = await(pending.prepared, pending.file);
+			}
+			mergeFile(pending.file, analyzeFile(prepared));
+		} else {
+			Package oldPackage = umlPackage;
+			enterFolder(pending.file);
+			for(PendingAnalysis child : pending.children)
+				collect(child);
+			umlPackage = oldPackage;
+		}
+	}
+
+	/**
+	 * Creates the package of a folder in the current package, which becomes the current one
+	 * 
+	 * @param folder The folder
+	 */
+	private void enterFolder(File folder) {
+		Package outerPackage = umlPackage;
+		umlPackage = outerPackage.createNestedPackage(folder.getName());
+		folderPackages.add(umlPackage);
+		if(isPatchable()) {
+			AnalyzedItem item = new AnalyzedItem();
+			item.file = folder;
+			item.folder = true;
+			item.umlPackage = outerPackage;
+			item.elements = Collections.singletonList(umlPackage);
+			item.oracle = new HashMap<>();
+			item.referenceIndex = new HashMap<>();
+			item.associations = Collections.emptyList();
+			item.superclasses = Collections.emptyList();
+			item.primitiveTypes = Collections.emptyList();
+			analyzedItems.add(item);
+		}
+	}
+
+	/**
+	 * Merges the fragment of a file into the current package
+	 * 
+	 * @param file The file
+	 * @param fragment The fragment (null if the file is not a valid JSON Schema)
+	 */
+	private void mergeFile(File file, JSONSchemaToUML fragment) {
+		if(isPatchable())
+			analyzedItems.add(newItem(file, fragment));
+		if(fragment != null) {
+			long start = startTimer();
+			merge(fragment);
+			stopTimer(Phase.MERGE, start);
+		}
+	}
+
+	/**
+	 * Creates the item which keeps the elements of a file (see {@link AnalyzedItem}), to be merged in the current package
+	 * 
+	 * @param file The file
+	 * @param fragment The fragment (null if the file is not a valid JSON Schema)
+	 * @return The item
+	 */
+	private AnalyzedItem newItem(File file, JSONSchemaToUML fragment) {
+		AnalyzedItem item = new AnalyzedItem();
+		item.file = file;
+		item.umlPackage = umlPackage;
+		if(fragment == null) {
+			item.elements = Collections.emptyList();
+			item.oracle = new HashMap<>();
+			item.referenceIndex = new HashMap<>();
+			item.associations = Collections.emptyList();
+			item.superclasses = Collections.emptyList();
+			item.primitiveTypes = Collections.emptyList();
+		} else {
+			item.elements = new ArrayList<>(fragment.umlPackage.getPackagedElements());
+			item.oracle = fragment.oracle;
+			item.referenceIndex = fragment.referenceIndex;
+			item.associations = fragment.associationsFound;
+			item.superclasses = fragment.superclassesFound;
+			item.primitiveTypes = new ArrayList<>(fragment.primitiveTypes.keySet());
+		}
+		return item;
+	}
+
+	/**
+	 * Checks if the model can be patched when a file changes (see {@link #update(File)}). The types shared by 
+	 * the structural deduplication and the definitions materialized from other files cannot be traced back to a single file
+	 * 
+	 * @return True if the incremental updates are enabled and the model can be patched
+	 */
+	private boolean isPatchable() {
+		return incrementalUpdates && !deduplicate && !lazyDefinitions;
+	}
+
+	/**
+	 * Updates the model after a file of the last launch has changed (see {@link #setIncrementalUpdates(boolean)}). The file
+	 * is analyzed again and its elements are replaced in its package (or removed, if it was deleted). Then, its references are resolved, 
+	 * and so are again only those of the rest of files which point to the concepts it defined or defines now.
+	 * 
+	 * New files are added to the package of their folder, in the order of the traversal. The whole model is built again (i.e., 
+	 * the tool is launched again and {@link #getModel()} returns a new model) if the folders change, if the incremental updates 
+	 * were not enabled, or if the structural deduplication or the lazy definitions are enabled.
+	 * 
+	 * @param file The file which has changed (created, modified or deleted)
+	 */
+	public void update(File file) {
+		if(launchedFile == null)
+			throw new JSONSchemaToUMLException("The tool must be launched before updating the model");
+		int index = indexOf(file);
+		AnalyzedItem old = (index < 0) ? null : analyzedItems.get(index);
+		if(old == null && !file.exists())
+			return;
+		if(!isPatchable() || file.isDirectory() || (old != null && old.folder)) {
+			relaunch();
+			return;
+		}
+		Package filePackage;
+		if(old != null) {
+			filePackage = old.umlPackage;
+		} else {
+			int parent = indexOf(file.getParentFile());
+			if(parent < 0) {
+				relaunch();
+				return;
+			}
+			filePackage = (Package) analyzedItems.get(parent).elements.get(0);
+			for(index = parent + 1; index < analyzedItems.size() && compareTraversal(analyzedItems.get(index).file, file) < 0; index++);
+		}
+		patch(index, old, file, filePackage);
+		if(validationCache != null) {
+			try {
+				validationCache.save();
+			} catch (IOException e) {
+				System.err.println("The validation cache could not be written");
+			}
+		}
+	}
+
+	/**
+	 * Replaces the elements of a file in its package
+	 * 
+	 * @param index The index of the file in the {@link #analyzedItems}
+	 * @param old The item of the file (null if it is new)
+	 * @param file The file
+	 * @param filePackage The package of the file
+	 */
+	private void patch(int index, AnalyzedItem old, File file, Package filePackage) {
+		JSONSchemaToUML fragment = file.isFile() ? analyzeFile(file) : null;
+		EList<PackageableElement> elements = filePackage.getPackagedElements();
+		int position = -1;
+		Set<CanonicalURI> changedKeys = new HashSet<>();
+		Set<String> changedNames = new HashSet<>();
+		if(old != null) {
+			for(ProxyAssociation proxy : old.associations) {
+				Association association = resolvedAssociations.remove(proxy);
+				if(association != null)
+					association.getNearestPackage().getPackagedElements().remove(association);
+			}
+			for(ProxySuperclass proxy : old.superclasses)
+				resolvedSuperclasses.remove(proxy);
+			if(!old.elements.isEmpty())
+				position = elements.indexOf(old.elements.get(0));
+			for(PackageableElement element : old.elements) {
+				elements.remove(element);
+				attributeIndex.remove(element);
+			}
+			changedKeys.addAll(old.referenceIndex.keySet());
+			changedNames.addAll(old.oracle.keySet());
+			analyzedItems.remove(index);
+		}
+
+		AnalyzedItem item = null;
+		if(file.exists()) {
+			Package outerPackage = umlPackage;
+			umlPackage = filePackage;
+			item = newItem(file, fragment);
+			analyzedItems.add(index, item);
+			if(position < 0)
+				position = insertionPoint(index, filePackage);
+			if(fragment != null) {
+				long start = startTimer();
+				merge(fragment);
+				stopTimer(Phase.MERGE, start);
+			}
+			umlPackage = outerPackage;
+			for(int i = 0; i < item.elements.size(); i++)
+				elements.move(position + i, item.elements.get(i));
+			changedKeys.addAll(item.referenceIndex.keySet());
+			changedNames.addAll(item.oracle.keySet());
+		}
+
+		arrangePrimitiveTypes();
+
+		// The indexes and references are collected again in the order of the traversal
+		oracle.clear();
+		referenceIndex.clear();
+		associationsFound.clear();
+		superclassesFound.clear();
+		for(AnalyzedItem each : analyzedItems) {
+			oracle.putAll(each.oracle);
+			referenceIndex.putAll(each.referenceIndex);
+			associationsFound.addAll(each.associations);
+			superclassesFound.addAll(each.superclasses);
+		}
+
+		long start = startTimer();
+		if(item != null && !item.associations.isEmpty()) {
+			// The new associations are placed as if every reference was resolved in order
+			Association next = null;
+			for(int i = associationsFound.indexOf(item.associations.get(item.associations.size() - 1)) + 1; next == null && i < associationsFound.size(); i++) {
+				Association association = resolvedAssociations.get(associationsFound.get(i));
+				if(association != null && association.getNearestPackage() == filePackage)
+					next = association;
+			}
+			for(ProxyAssociation proxy : item.associations) {
+				Association association = resolve(proxy);
+				if(next != null)
+					elements.move(elements.indexOf(next), association);
+			}
+			if(metrics != null)
+				metrics.increment(Counter.ASSOCIATIONS, item.associations.size());
+		}
+		for(ProxyAssociation proxy : associationsFound) {
+			Association association = resolvedAssociations.get(proxy);
+			if(association != null && (changedKeys.contains(CanonicalURI.of(proxy.target)) || changedNames.contains(referencedName(proxy.ref)))) {
+				// The navigable end is the first one (see UMLElementFactory#createAssociation)
+				Property end = association.getMemberEnds().get(0);
+				Class foundClass = findClass(proxy.ref, proxy.target);
+				if(end.getType() != foundClass)
+					end.setType(foundClass);
+			}
+		}
+		stopTimer(Phase.RESOLVE_ASSOCIATIONS, start);
+		start = startTimer();
+		if(item != null)
+			for(ProxySuperclass proxy : item.superclasses)
+				resolve(proxy);
+		for(ProxySuperclass proxy : superclassesFound) {
+			Generalization generalization = resolvedSuperclasses.get(proxy);
+			if(generalization != null && (changedKeys.contains(CanonicalURI.of(proxy.target)) || changedNames.contains(referencedName(proxy.ref)))) {
+				Class foundClass = findClass(proxy.ref, proxy.target);
+				if(generalization.getGeneral() != foundClass)
+					generalization.setGeneral(foundClass);
+			}
+		}
+		stopTimer(Phase.RESOLVE_SUPERCLASSES, start);
+	}
+
+	/**
+	 * Removes the primitive types no longer used after a file changes, and sorts the rest in the order they are used by 
+	 * the files. They are placed as {@link #getPrimitiveType(String)} creates them when the files are merged in order, i.e., after
+	 * the class used when something goes wrong and the package of the folder launched (if any)
+	 */
+	private void arrangePrimitiveTypes() {
+		LinkedHashSet<String> used = new LinkedHashSet<>();
+		for(AnalyzedItem item : analyzedItems)
+			used.addAll(item.primitiveTypes);
+		LinkedHashMap<String, PrimitiveType> arranged = new LinkedHashMap<>();
+		for(String typeName : used) {
+			PrimitiveType type = primitiveTypes.get(typeName);
+			// The shared primitive types are not in the model
+			if(type != null)
+				arranged.put(typeName, type);
+		}
+		if(new ArrayList<>(arranged.keySet()).equals(new ArrayList<>(primitiveTypes.keySet())))
+			return;
+		EList<PackageableElement> elements = rootPackage.getPackagedElements();
+		elements.removeAll(primitiveTypes.values());
+		elements.addAll(elements.indexOf(unknown) + (folderPackages.isEmpty() ? 1 : 2), arranged.values());
+		primitiveTypes.clear();
+		primitiveTypes.putAll(arranged);
+	}
+
+	/**
+	 * Computes where the elements of a file with no elements yet are placed in its package: before the elements of
+	 * the next file/folder of the package and the associations created when resolving the references
+	 * 
+	 * @param index The index of the file in the {@link #analyzedItems}
+	 * @param filePackage The package of the file
+	 * @return The position in the package
+	 */
+	private int insertionPoint(int index, Package filePackage) {
+		List<PackageableElement> elements = filePackage.getPackagedElements();
+		for(int i = index + 1; i < analyzedItems.size(); i++) {
+			AnalyzedItem next = analyzedItems.get(i);
+			if(next.umlPackage == filePackage && !next.elements.isEmpty())
+				return elements.indexOf(next.elements.get(0));
+		}
+		Set<Association> resolved = new HashSet<>(resolvedAssociations.values());
+		for(int i = 0; i < elements.size(); i++)
+			if(resolved.contains(elements.get(i)))
+				return i;
+		return elements.size();
+	}
+
+	/**
+	 * Returns the index of a file/folder in the {@link #analyzedItems}
+	 * 
+	 * @param file The file/folder
+	 * @return The index (-1 if it was not analyzed)
+	 */
+	private int indexOf(File file) {
+		File absoluteFile = file.getAbsoluteFile();
+		for(int i = 0; i < analyzedItems.size(); i++)
+			if(analyzedItems.get(i).file.getAbsoluteFile().equals(absoluteFile))
+				return i;
+		return -1;
+	}
+
+	/**
+	 * Compares two files in the order of the traversal (see {@link #listFiles(File)}), i.e., their paths name by name
+	 * 
+	 * @param file The first file
+	 * @param other The second file
+	 * @return A negative integer, zero, or a positive integer as the first file is traversed before, at the same time or after the second one
+	 */
+	private static int compareTraversal(File file, File other) {
+		Path path = file.getAbsoluteFile().toPath(), otherPath = other.getAbsoluteFile().toPath();
+		for(int i = 0; i < path.getNameCount() && i < otherPath.getNameCount(); i++) {
+			int comparison = path.getName(i).toFile().compareTo(otherPath.getName(i).toFile());
+			if(comparison != 0)
+				return comparison;
+		}
+		return path.getNameCount() - otherPath.getNameCount();
+	}
+
+	/**
+	 * Builds the whole model again, launching the tool with the file/folder of the last launch
+	 */
+	private void relaunch() {
+		initModel(model.getName());
+		oracle.clear();
+		referenceIndex.clear();
+		superclassesFound.clear();
+		associationsFound.clear();
+		attributeIndex.clear();
+		structuralTypes.clear();
+		pendingDefinitions.clear();
+		pendingIndex.clear();
+		pendingNames.clear();
+		folderPackages.clear();
+		primitiveTypes.clear();
+		analyzedItems.clear();
+		resolvedAssociations.clear();
+		resolvedSuperclasses.clear();
+		launch(launchedFile);
+	}
+
+	/**
+	 * Analyzes a folder/file with the pipelined ingestion (see {@link #setReadAhead(int)}). The files are
+	 * analyzed and merged by this thread, in the order of the traversal, as they are prepared.
+	 * 
+	 * @param inputFile A Folder or a file to analyze.
+	 */
+	private void ingest(File inputFile) {
+		ExecutorService readers = newReaders();
+		BlockingQueue<IngestedItem> queue = new ArrayBlockingQueue<>(readAhead);
+		Thread walker = new Thread(() -> {
+			IngestedItem end = new IngestedItem();
+			end.event = IngestionEvent.END;
+			try {
+				try {
+					walk(inputFile, readers, queue);
+				} catch (RuntimeException e) {
+					end.error = e;
+				}
+				queue.put(end);
+			} catch (InterruptedException e) {
+				// The analysis was aborted
+			}
+		}, "jsonschematouml-walker");
+		walker.setDaemon(true);
+		walker.start();
+
+		ArrayDeque<Package> outerPackages = new ArrayDeque<>();
+		try {
+			while(true) {
+				IngestedItem item = queue.take();
+				switch(item.event) {
+				case ENTER_FOLDER:
+					outerPackages.push(umlPackage);
+					enterFolder(item.file);
+					break;
+				case LEAVE_FOLDER:
+					umlPackage = outerPackages.pop();
+					break;
+				case FILE:
+					mergeFile(item.file, analyzeFile(await(item.prepared, item.file)));
+					break;
+				case END:
+					if(item.error != null)
+						throw item.error;
+					return;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new JSONSchemaToUMLException("The analysis of " + inputFile.getAbsolutePath() + " was interrupted", e);
+		} finally {
+			walker.interrupt();
+			readers.shutdownNow();
+			if(!outerPackages.isEmpty())
+				umlPackage = outerPackages.getLast();
+		}
+	}
+
+	/**
+	 * Traverses a folder/file (as {@link #schedule(File)} does) and dispatches the preparation of the 
+	 * files found. The events are put in the queue in the order of the traversal, waiting while it is full.
+	 * 
+	 * @param inputFile A Folder or a file to analyze.
+	 * @param readers The executor where the files are prepared
+	 * @param queue The queue of the events
+	 * @throws InterruptedException If the analysis is aborted
+	 */
+	private void walk(File inputFile, ExecutorService readers, BlockingQueue<IngestedItem> queue) throws InterruptedException {
+		IngestedItem item = new IngestedItem();
+		item.file = inputFile;
+		if(inputFile.isFile()) {
+			item.event = IngestionEvent.FILE;
+			item.prepared = readers.submit(() -> prepareFile(inputFile));
+			queue.put(item);
+		} else if(inputFile.isDirectory()) {
+			item.event = IngestionEvent.ENTER_FOLDER;
+			queue.put(item);
+			for(File inFile : listFiles(inputFile))
+				walk(inFile, readers, queue);
+			IngestedItem leave = new IngestedItem();
+			leave.event = IngestionEvent.LEAVE_FOLDER;
+			leave.file = inputFile;
+			queue.put(leave);
+		} else
+			throw new JSONSchemaToUMLException("Invalid input");
+	}
+
+	/**
+	 * Creates the executor where the files are prepared in the pipelined ingestion: a virtual thread per file
+	 * if the runtime supports them, otherwise a pool with a thread per file read ahead
+	 * 
+	 * @return The executor
+	 */
+	private ExecutorService newReaders() {
+		try {
+			// Looked up reflectively, as the plugin targets Java 8
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newFixedThreadPool(readAhead, new ThreadFactory() {
+				private final AtomicInteger counter = new AtomicInteger();
+
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "jsonschematouml-reader-" + counter.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+	}
+
+	/**
+	 * Lists the contents of a folder in alphabetical order, so the resulting model does not depend on the file system
+	 * 
+	 * @param folder The folder
+	 * @return The files/folders it contains
+	 */
+	private static List<File> listFiles(File folder) {
+		List<File> files = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder.toPath())) {
+			for(Path path : stream)
+				files.add(path.toFile());
+		} catch (IOException e) {
+			throw new JSONSchemaToUMLException("The folder " + folder.getAbsolutePath() + " could not be read", e);
+		}
+		Collections.sort(files);
+		return files;
+	}
+
+	/**
+	 * Waits for a task run for a file
+	 * 
+	 * @param task The task
+	 * @param file The file
+	 * @return The result of the task
+	 */
+	private <T> T await(Future<T> task, File file) {
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new JSONSchemaToUMLException("The analysis of " + file.getAbsolutePath() + " was interrupted", e);
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new JSONSchemaToUMLException("The analysis of " + file.getAbsolutePath() + " failed", e.getCause());
+		}
+	}
+
+	/**
+	 * Analyzes a file into a new fragment (see {@link #prepareFile(File)} and {@link #analyzeFile(PreparedFile)}).
+	 * 
+	 * @param inputFile The file to analyze
+	 * @return The fragment with the result of the analysis (null if the file is not a valid JSON Schema)
+	 */
+	private JSONSchemaToUML analyzeFile(File inputFile) {
+		return analyzeFile(prepareFile(inputFile));
+	}
+
+	/**
+	 * Prepares a file to be analyzed: in incremental mode, the entry of the cache is read if the 
+	 * file has not changed since it was stored, otherwise the file is read, parsed and validated. Files read in
+	 * streaming mode are only parsed when they are analyzed.
+	 * 
+	 * This method does not modify this instance and creates no UML element, so it can be called concurrently.
+	 * 
+	 * @param inputFile The file to prepare
+	 * @return The prepared file
+	 */
+	private PreparedFile prepareFile(File inputFile) {
+		long start = startTimer();
+		PreparedFile prepared = new PreparedFile();
+		prepared.file = inputFile;
+		prepared.streamed = inputFile.length() >= streamingThreshold;
+		JSONDocument document = null;
+		if(cache != null) {
+			try {
+				// Files analyzed in memory are read only once, for both the cache and the analysis
+				if(prepared.streamed) {
+					prepared.digest = cache.digest(inputFile);
+				} else {
+					document = JSONDocument.read(inputFile);
+					prepared.digest = document.digest();
+				}
+				JsonNode manifest = cache.loadManifest(inputFile, prepared.digest, prepared.streamed, validationLevel);
+				// Entries stored with a different deduplication setting are not used
+				if(manifest != null && manifest.has("structuralTypes") == deduplicate && manifest.has("pendingDefinitions") == lazyDefinitions) {
+					prepared.elements = cache.readElements(inputFile);
+					prepared.manifest = manifest;
+				}
+			} catch (IOException | RuntimeException e) {
+				// The entry cannot be used, the file is analyzed again
+				System.err.println("The cache entry of the file " + inputFile.getAbsolutePath() + " could not be read");
+			}
+		}
+
+		if(prepared.manifest == null && !prepared.streamed)
+			prepared.rootElement = readTree(inputFile, document);
+		if(metrics != null)
+			prepared.time = System.nanoTime() - start;
+		return prepared;
+	}
+
+	/**
+	 * Analyzes a prepared file into a new fragment (see {@link #prepareFile(File)}): the fragment is loaded from
+	 * the entry of the cache, if any, otherwise the file is analyzed. In incremental mode, the fragment is stored in the cache.
+	 * 
+	 * This method does not modify this instance, but it creates UML elements, so it is only called by the thread
+	 * which launches the tool (see {@link #setExecutor(ExecutorService)}).
+	 * 
+	 * @param prepared The prepared file
+	 * @return The fragment with the result of the analysis (null if the file is not a valid JSON Schema)
+	 */
+	private JSONSchemaToUML analyzeFile(PreparedFile prepared) {
+		long start = startTimer();
+		JSONSchemaToUML fragment = null;
+		boolean cached = false;
+		JsonNode rootElement = prepared.rootElement;
+		if(prepared.manifest != null) {
+			try {
+				fragment = loadFragment(cache.loadElements(prepared.file, prepared.elements), prepared.manifest);
+				cached = true;
+				if(metrics != null)
+					metrics.increment(Counter.CACHED_FILES, 1);
+			} catch (IOException | RuntimeException e) {
+				// The entry cannot be used, the file is analyzed again
+				System.err.println("The cache entry of the file " + prepared.file.getAbsolutePath() + " could not be read");
+				if(!prepared.streamed)
+					rootElement = readTree(prepared.file, null);
+			}
+		}
+		if(fragment == null) {
+			if(prepared.streamed) {
+				fragment = analyzeStream(prepared.file);
+			} else if(rootElement != null) {
+				fragment = new JSONSchemaToUML(this);
+				fragment.analyzeSchema(prepared.file, rootElement);
+				stopTimer(Phase.ANALYZE, start);
+			}
+		}
+		if(fragment != null && !cached && prepared.digest != null) {
+			try {
+				fragment.storeFragment(cache, prepared.file, prepared.digest, prepared.streamed);
+			} catch (IOException e) {
+				System.err.println("The cache entry of the file " + prepared.file.getAbsolutePath() + " could not be written");
+			}
+		}
+		if(metrics != null)
+			metrics.fileAnalyzed(prepared.file, prepared.time + System.nanoTime() - start, fragment != null);
+		return fragment;
+	}
+
+	/**
+	 * Reads a file and checks that it is a valid JSON Schema. The file is read and parsed only once 
+	 * (see {@link JSONDocument}), the resulting tree is used for both the validation and the transformation.
+	 * 
+	 * This method does not modify this instance, so it can be called concurrently.
+	 * 
+	 * @param inputFile The file to read
+	 * @param document The contents of the file (null if they have not been read yet)
+	 * @return The root element of the file (null if the file is not a valid JSON Schema)
+	 */
+	private JsonNode readTree(File inputFile, JSONDocument document) {
+		JsonNode rootElement = null;
+		try {
+			long start = startTimer();
+			if(document == null)
+				document = JSONDocument.read(inputFile);
+			rootElement = document.parse();
+			stopTimer(Phase.PARSE, start);
+			start = startTimer();
+			String digest = (validationCache != null && validationLevel == ValidationLevel.FULL) ? document.digest() : null;
+			// If the file is NOT a valid JSON Schema, we skip it
+			boolean valid = JSONSchemaValidator.isValid(rootElement, validationLevel, digest, validationCache);
+			stopTimer(Phase.VALIDATE, start);
+			if(!valid) {
+				System.err.println("The file " + inputFile.getAbsolutePath() + " is not a valid JSON Schema");
+				return null;
+			}
+		} catch (IOException | ProcessingException e) {
+			System.err.println("The file " + inputFile.getAbsolutePath() + " is not a valid JSON file");
+			return null;
+		}
+		return rootElement;
+	}
+
+	/**
+	 * Analyzes a file into a new fragment without loading the whole document in memory. The top-level
+	 * object is read token by token: each entry of "definitions" is read, validated and mapped on its own
+	 * and then discarded, while the rest of the members of the root are kept and mapped at the end (they may
+	 * come in any order). The memory needed is therefore bounded by the largest definition and not by the size of
+	 * the file.
+	 * 
+	 * Note that, in this mode, the concepts of the definitions are created before the one of the root, and the
+	 * references in the definitions are resolved against the id of the root only if it comes before them.
+	 * Each definition is validated as a schema on its own (using the "$schema" of the root if it was
+	 * already read), which is the same check the validator does on the whole document.
+	 * 
+	 * This method does not modify this instance, but it creates UML elements, so it is only called by the thread
+	 * which launches the tool.
+	 * 
+	 * @param inputFile The file to analyze
+	 * @return The fragment with the result of the analysis (null if the file is not a valid JSON Schema)
+	 */
+	private JSONSchemaToUML analyzeStream(File inputFile) {
+		JSONSchemaToUML fragment = new JSONSchemaToUML(this);
+		ObjectNode rootElement = JacksonUtils.nodeFactory().objectNode();
+		String definitionsBaseURI = null;
+		String digest = null;
+		boolean validated = false;
+		try {
+			if(validationCache != null && validationLevel == ValidationLevel.FULL) {
+				digest = ValidationCache.digest(inputFile);
+				Boolean valid = validationCache.get(digest);
+				if(valid != null && !valid) {
+					System.err.println("The file " + inputFile.getAbsolutePath() + " is not a valid JSON Schema");
+					return null;
+				}
+				validated = (valid != null);
+			}
+		} catch (IOException e) {
+			System.err.println("The file " + inputFile.getAbsolutePath() + " is not a valid JSON file");
+			return null;
+		}
+		// The time spent validating and analyzing the definitions is not part of the parsing
+		long parseStart = startTimer(), nested = 0;
+		try (JsonParser parser = MAPPER.getFactory().createParser(JSONDocument.newReader(inputFile))) {
+			if(parser.nextToken() != JsonToken.START_OBJECT) {
+				System.err.println("The file " + inputFile.getAbsolutePath() + " is not a valid JSON Schema");
+				return null;
+			}
+			while(parser.nextToken() == JsonToken.FIELD_NAME) {
+				String fieldName = parser.getCurrentName();
+				JsonToken token = parser.nextToken();
+				if(fieldName.equals("definitions") && token == JsonToken.START_OBJECT) {
+					// Section 9 in json-validation
+					fragment.enterDocument(inputFile, rootElement);
+					definitionsBaseURI = fragment.baseURI;
+					while(parser.nextToken() == JsonToken.FIELD_NAME) {
+						String definitionName = parser.getCurrentName();
+						parser.nextToken();
+						JsonNode definition = JSONDocument.readTree(parser);
+						if(definition.isObject() && rootElement.has("$schema"))
+							((ObjectNode) definition).set("$schema", rootElement.get("$schema"));
+						long start = startTimer();
+						boolean valid = validated || JSONSchemaValidator.isValid(definition, validationLevel);
+						nested += stopTimer(Phase.VALIDATE, start);
+						if(!valid) {
+							System.err.println("The file " + inputFile.getAbsolutePath() + " is not a valid JSON Schema");
+							if(digest != null)
+								validationCache.put(digest, false);
+							return null;
+						}
+						start = startTimer();
+						fragment.traverse(() -> fragment.analyzeRootSchemaElement(definitionName, definition, JSONPointer.of("/definitions/" + escape(definitionName))));
+						nested += stopTimer(Phase.ANALYZE, start);
+					}
+				} else {
+					rootElement.set(fieldName, JSONDocument.readTree(parser));
+				}
+			}
+			if(metrics != null)
+				metrics.record(Phase.PARSE, System.nanoTime() - parseStart - nested);
+			// If the rest of the file is NOT a valid JSON Schema, we skip it
+			long start = startTimer();
+			boolean valid = validated || JSONSchemaValidator.isValid(rootElement, validationLevel, digest, validationCache);
+			stopTimer(Phase.VALIDATE, start);
+			if(!valid) {
+				System.err.println("The file " + inputFile.getAbsolutePath() + " is not a valid JSON Schema");
+				return null;
+			}
+		} catch (IOException | ProcessingException e) {
+			System.err.println("The file " + inputFile.getAbsolutePath() + " is not a valid JSON file");
+			return null;
+		}
+		long start = startTimer();
+		fragment.analyzeSchema(inputFile, rootElement);
+		stopTimer(Phase.ANALYZE, start);
+		if(definitionsBaseURI != null && !definitionsBaseURI.equals(fragment.baseURI)) {
+			// The id of the root came after the definitions, they are indexed again with the final base URI
+			String definitionsPrefix = definitionsBaseURI + "#/definitions/";
+			for(Entry<CanonicalURI, Class> entry : new ArrayList<>(fragment.referenceIndex.entrySet())) {
+				String key = entry.getKey().toString();
+				if(key.startsWith(definitionsPrefix))
+					fragment.referenceIndex.put(CanonicalURI.of(fragment.baseURI + key.substring(definitionsBaseURI.length())), entry.getValue());
+			}
+		}
+		return fragment;
+	}
+
+	/**
+	 * Stores this fragment in the cache. The elements are stored as XMI and the concepts and references
+	 * found are stored in the manifest (elements are referred by their URI fragment).
+	 * 
+	 * @param cache The cache where the fragment is stored
+	 * @param inputFile The file analyzed
+	 * @param digest The digest of the contents of the file
+	 * @param streamed Whether the file was read in streaming mode
+	 * @throws IOException
+	 */
+	private void storeFragment(FragmentCache cache, File inputFile, String digest, boolean streamed) throws IOException {
+		Resource resource = cache.newResource(inputFile, Arrays.asList(umlPackage, rootPackage));
+		ObjectNode manifest = JacksonUtils.nodeFactory().objectNode();
+		ObjectNode primitiveTypesNode = manifest.putObject("primitiveTypes");
+		for(Entry<String, PrimitiveType> entry : primitiveTypes.entrySet())
+			primitiveTypesNode.put(entry.getKey(), resource.getURIFragment(entry.getValue()));
+		ObjectNode oracleNode = manifest.putObject("oracle");
+		for(Entry<String, Class> entry : oracle.entrySet())
+			oracleNode.put(entry.getKey(), resource.getURIFragment(entry.getValue()));
+		ObjectNode referenceIndexNode = manifest.putObject("referenceIndex");
+		for(Entry<CanonicalURI, Class> entry : referenceIndex.entrySet())
+			referenceIndexNode.put(entry.getKey().toString(), resource.getURIFragment(entry.getValue()));
+		ArrayNode superclassesNode = manifest.putArray("superclasses");
+		for(ProxySuperclass proxy : superclassesFound) {
+			ObjectNode superclassNode = superclassesNode.addObject();
+			superclassNode.put("ref", proxy.ref.getURIString());
+			superclassNode.put("target", proxy.target);
+			superclassNode.put("subclass", resource.getURIFragment(proxy.subclass));
+		}
+		ArrayNode associationsNode = manifest.putArray("associations");
+		for(ProxyAssociation proxy : associationsFound) {
+			ObjectNode associationNode = associationsNode.addObject();
+			associationNode.put("ref", proxy.ref.getURIString());
+			associationNode.put("target", proxy.target);
+			associationNode.put("owner", resource.getURIFragment(proxy.owner));
+			associationNode.put("sourceComposition", proxy.sourceComposition);
+			associationNode.put("targetComposition", proxy.targetComposition);
+			associationNode.put("sourceKind", proxy.sourceKind.getLiteral());
+			associationNode.put("targetKind", proxy.targetKind.getLiteral());
+			associationNode.put("sourceEnd", proxy.sourceEnd);
+			associationNode.put("targetEnd", proxy.targetEnd);
+			associationNode.put("sourceLower", proxy.sourceLower);
+			associationNode.put("sourceUpper", proxy.sourceUpper);
+			associationNode.put("targetLower", proxy.targetLower);
+			associationNode.put("targetUpper", proxy.targetUpper);
+		}
+		if(deduplicate) {
+			ObjectNode structuralTypesNode = manifest.putObject("structuralTypes");
+			for(Entry<String, StructuralType> entry : structuralTypes.entrySet()) {
+				ObjectNode structuralTypeNode = structuralTypesNode.putObject(entry.getKey());
+				structuralTypeNode.put("type", resource.getURIFragment(entry.getValue().type));
+				ArrayNode elementsNode = structuralTypeNode.putArray("elements");
+				for(PackageableElement element : entry.getValue().elements)
+					elementsNode.add(resource.getURIFragment(element));
+			}
+		}
+		if(lazyDefinitions) {
+			ArrayNode pendingDefinitionsNode = manifest.putArray("pendingDefinitions");
+			for(PendingDefinition pending : pendingDefinitions) {
+				ObjectNode pendingNode = pendingDefinitionsNode.addObject();
+				pendingNode.put("name", pending.name);
+				pendingNode.put("pointer", pending.pointer.toString());
+				pendingNode.put("baseURI", pending.baseURI);
+				pendingNode.put("documentURI", pending.documentURI);
+				pendingNode.set("definition", pending.definition);
+			}
+		}
+		try {
+			cache.store(inputFile, digest, streamed, validationLevel, resource, manifest);
+		} finally {
+			// The elements are detached again, they will be merged into the model
+			resource.getContents().clear();
+		}
+	}
+
+	/**
+	 * Creates a fragment from an entry of the cache (see {@link #storeFragment(FragmentCache, File, String, boolean)})
+	 * 
+	 * @param resource The resource including the elements of the fragment
+	 * @param manifest The manifest of the fragment
+	 * @return The fragment
+	 */
+	private JSONSchemaToUML loadFragment(Resource resource, JsonNode manifest) {
+		JSONSchemaToUML fragment = new JSONSchemaToUML(this);
+		fragment.umlPackage = (Package) resource.getContents().get(0);
+		fragment.rootPackage = (Package) resource.getContents().get(1);
+		for(Iterator<Entry<String, JsonNode>> it = manifest.get("primitiveTypes").fields(); it.hasNext(); ) {
+			Entry<String, JsonNode> entry = it.next();
+			fragment.primitiveTypes.put(entry.getKey(), (PrimitiveType) resource.getEObject(entry.getValue().asText()));
+		}
+		for(Iterator<Entry<String, JsonNode>> it = manifest.get("oracle").fields(); it.hasNext(); ) {
+			Entry<String, JsonNode> entry = it.next();
+			fragment.oracle.put(entry.getKey(), (Class) resource.getEObject(entry.getValue().asText()));
+		}
+		for(Iterator<Entry<String, JsonNode>> it = manifest.get("referenceIndex").fields(); it.hasNext(); ) {
+			Entry<String, JsonNode> entry = it.next();
+			fragment.referenceIndex.put(CanonicalURI.of(entry.getKey()), (Class) resource.getEObject(entry.getValue().asText()));
+		}
+		for(JsonNode superclassNode : manifest.get("superclasses")) {
+			ProxySuperclass proxy = new ProxySuperclass();
+			proxy.ref = JSONSchemaURI.of(superclassNode.get("ref").asText());
+			proxy.target = superclassNode.get("target").asText();
+			proxy.subclass = (Class) resource.getEObject(superclassNode.get("subclass").asText());
+			fragment.superclassesFound.add(proxy);
+		}
+		for(JsonNode associationNode : manifest.get("associations")) {
+			ProxyAssociation proxy = new ProxyAssociation();
+			proxy.ref = JSONSchemaURI.of(associationNode.get("ref").asText());
+			proxy.target = associationNode.get("target").asText();
+			proxy.owner = (Class) resource.getEObject(associationNode.get("owner").asText());
+			proxy.sourceComposition = associationNode.get("sourceComposition").asBoolean();
+			proxy.targetComposition = associationNode.get("targetComposition").asBoolean();
+			proxy.sourceKind = AggregationKind.get(associationNode.get("sourceKind").asText());
+			proxy.targetKind = AggregationKind.get(associationNode.get("targetKind").asText());
+			proxy.sourceEnd = associationNode.get("sourceEnd").asText();
+			proxy.targetEnd = associationNode.get("targetEnd").asText();
+			proxy.sourceLower = associationNode.get("sourceLower").asInt();
+			proxy.sourceUpper = associationNode.get("sourceUpper").asInt();
+			proxy.targetLower = associationNode.get("targetLower").asInt();
+			proxy.targetUpper = associationNode.get("targetUpper").asInt();
+			fragment.associationsFound.add(proxy);
+		}
+		if(manifest.has("structuralTypes")) {
+			for(Iterator<Entry<String, JsonNode>> it = manifest.get("structuralTypes").fields(); it.hasNext(); ) {
+				Entry<String, JsonNode> entry = it.next();
+				StructuralType structuralType = new StructuralType();
+				structuralType.type = (Type) resource.getEObject(entry.getValue().get("type").asText());
+				structuralType.elements = new ArrayList<>();
+				for(JsonNode elementNode : entry.getValue().get("elements"))
+					structuralType.elements.add((PackageableElement) resource.getEObject(elementNode.asText()));
+				fragment.structuralTypes.put(entry.getKey(), structuralType);
+			}
+		}
+		if(manifest.has("pendingDefinitions")) {
+			for(JsonNode pendingNode : manifest.get("pendingDefinitions")) {
+				fragment.baseURI = pendingNode.get("baseURI").asText();
+				fragment.documentURI = pendingNode.get("documentURI").isNull() ? null : pendingNode.get("documentURI").asText();
+				fragment.addPendingDefinition(pendingNode.get("name").asText(), pendingNode.get("definition"), JSONPointer.of(pendingNode.get("pointer").asText()));
+			}
+		}
+		resource.getContents().clear();
+		return fragment;
+	}
+
+	/**
+	 * Merges a fragment into the current package. The primitive types used in the fragment are replaced 
+	 * by the ones of the model, and the concepts and references found are added to the ones of the model.
+	 * 
+	 * If the structural deduplication is enabled, the types of the fragment which were already created for the same 
+	 * sub-schemas are also replaced, and the elements created for them are discarded.
+	 * 
+	 * @param fragment The fragment to merge
+	 */
+	private void merge(JSONSchemaToUML fragment) {
+		HashMap<Type, Type> replacements = new HashMap<>();
+		for(Entry<String, PrimitiveType> entry : fragment.primitiveTypes.entrySet())
+			replacements.put(entry.getValue(), getPrimitiveType(entry.getKey()));
+		Set<EObject> discarded = new HashSet<>();
+		for(Entry<String, StructuralType> entry : fragment.structuralTypes.entrySet()) {
+			StructuralType existing = structuralTypes.get(entry.getKey());
+			if(existing != null) {
+				replacements.put(entry.getValue().type, existing.type);
+				discarded.addAll(entry.getValue().elements);
+			}
+		}
+		for(Entry<String, StructuralType> entry : fragment.structuralTypes.entrySet())
+			if(!structuralTypes.containsKey(entry.getKey()) && !discarded.contains(entry.getValue().type))
+				structuralTypes.put(entry.getKey(), entry.getValue());
+		if(!replacements.isEmpty()) {
+			for(TreeIterator<EObject> it = fragment.umlPackage.eAllContents(); it.hasNext(); ) {
+				EObject element = it.next();
+				if(discarded.contains(element)) {
+					it.prune();
+				} else if(element instanceof TypedElement) {
+					Type replacement = replacements.get(((TypedElement) element).getType());
+					if(replacement != null)
+						((TypedElement) element).setType(replacement);
+				}
+			}
+		}
+		if(!discarded.isEmpty()) {
+			fragment.umlPackage.getPackagedElements().removeAll(discarded);
+			fragment.attributeIndex.keySet().removeAll(discarded);
+			fragment.associationsFound.removeIf(proxy -> discarded.contains(proxy.owner));
+			fragment.superclassesFound.removeIf(proxy -> discarded.contains(proxy.subclass));
+			for(HashMap<?, Class> concepts : Arrays.<HashMap<?, Class>>asList(fragment.oracle, fragment.referenceIndex)) {
+				for(Iterator<? extends Entry<?, Class>> it = concepts.entrySet().iterator(); it.hasNext(); ) {
+					Entry<?, Class> entry = it.next();
+					if(replacements.containsKey(entry.getValue()))
+						entry.setValue((Class) replacements.get(entry.getValue()));
+					else if(discarded.contains(entry.getValue()))
+						it.remove();
+				}
+			}
+		}
+		if(metrics != null)
+			metrics.count(fragment.umlPackage.getPackagedElements());
+		// The elements are detached all at once, moving them one by one would look each of them up in the fragment
+		List<PackageableElement> elements = new ArrayList<>(fragment.umlPackage.getPackagedElements());
+		fragment.umlPackage.getPackagedElements().clear();
+		umlPackage.getPackagedElements().addAll(elements);
+		oracle.putAll(fragment.oracle);
+		referenceIndex.putAll(fragment.referenceIndex);
+		superclassesFound.addAll(fragment.superclassesFound);
+		associationsFound.addAll(fragment.associationsFound);
+		for(PendingDefinition pending : fragment.pendingDefinitions)
+			pending.umlPackage = umlPackage;
+		pendingDefinitions.addAll(fragment.pendingDefinitions);
+		pendingIndex.putAll(fragment.pendingIndex);
+		pendingNames.putAll(fragment.pendingNames);
+	}
+
+	/**
+	 * Analyzes a file conforming to the JSON schema in order to create the corresponding UML elements (which will
+	 * be stored in both the oracle and the model)
+	 * 
+	 * @param file The file to analyze
+	 * @param rootElement The root element of the file, already parsed (and validated)
+	 */
+	private void analyzeSchema(File file, JsonNode rootElement) {
+		String modelConceptName = file.getName().substring(0, file.getName().indexOf("."));
+		// Basic info from the schema
+		if(rootElement.has("id")) {
+			String id = rootElement.get("id").asText();
+			JSONSchemaURI jsu = JSONSchemaURI.of(id);
+			modelConceptName = jsu.digestIdName();
+		}
+		enterDocument(file, rootElement);
+		String rootConceptName = modelConceptName;
+		traverse(() -> analyzeRootSchemaElement(rootConceptName, rootElement, JSONPointer.EMPTY));
+	}
+
+	/**
+	 * Sets the base URI to analyze a file: the id of the root element (resolved against the location of the file)
+	 * or, if there is no id, the location of the file.
+	 * 
+	 * @param file The file being analyzed
+	 * @param rootElement The root element of the file
+	 */
+	private void enterDocument(File file, JsonNode rootElement) {
+		documentURI = file.toURI().toString();
+		baseURI = documentURI;
+		String id = getId(rootElement);
+		if(id != null) {
+			String resolvedId = JSONSchemaURI.resolve(documentURI, id);
+			int hash = resolvedId.indexOf('#');
+			baseURI = (hash < 0) ? resolvedId : resolvedId.substring(0, hash);
+		}
+	}
+
+	/**
+	 * Enters the resolution scope of an element. If the element has an id, it is resolved against the current
+	 * base URI and becomes the base URI of the element and its children (cf. Section 8.2 in json-schema-core). 
+	 * Ids which are plain name fragments (e.g., "#foo") only identify the element. The caller is in charge of 
+	 * restoring {@link #baseURI} and {@link #documentURI} afterwards.
+	 * 
+	 * @param object The element
+	 * @param pointer The JSON Pointer of the element in the current scope
+	 * @param concept The concept created for the element (it is indexed with its id). It can be null
+	 * @return The JSON Pointer of the element in the new scope
+	 */
+	private JSONPointer enterScope(JsonNode object, JSONPointer pointer, Class concept) {
+		String id = getId(object);
+		if(id == null)
+			return pointer;
+		String resolvedId = reference(id);
+		int hash = resolvedId.indexOf('#');
+		if(hash < resolvedId.length() - 1) {
+			if(concept != null)
+				referenceIndex.put(CanonicalURI.of(resolvedId), concept);
+			return pointer;
+		}
+		String scopeURI = resolvedId.substring(0, hash);
+		if(!scopeURI.equals(baseURI)) {
+			baseURI = scopeURI;
+			documentURI = null;
+			pointer = JSONPointer.EMPTY;
+			if(concept != null)
+				indexConcept(concept, pointer);
+		}
+		return pointer;
+	}
 
-		// Main package
-		umlPackage = model.createNestedPackage(modelName);
-		rootPackage = umlPackage;
+	/**
+	 * Indexes a concept with the canonical URI of the element it comes from
+	 * 
+	 * @param concept The concept
+	 * @param pointer The JSON Pointer of the element in the current scope
+	 */
+	private void indexConcept(Class concept, JSONPointer pointer) {
+		referenceIndex.put(CanonicalURI.of(baseURI, pointer), concept);
+		if(documentURI != null && !documentURI.equals(baseURI))
+			referenceIndex.put(CanonicalURI.of(documentURI, pointer), concept);
+	}
 
-		// Class to reuse when something goes wrong
-		unknown = umlPackage.createOwnedClass("Unknown", false);
+	/**
+	 * Computes the canonical URI of a reference: it is resolved against the current base URI and its
+	 * fragment (i.e., the JSON Pointer) is percent-decoded. References to a whole schema end with "#".
+	 * 
+	 * @param ref The reference (e.g., the value of a $ref)
+	 * @return The canonical URI
+	 */
+	private String reference(String ref) {
+		String resolved = JSONSchemaURI.resolve(baseURI, ref);
+		int hash = resolved.indexOf('#');
+		if(hash < 0)
+			return resolved + "#";
+		String fragment = resolved.substring(hash + 1);
+		if(fragment.indexOf('%') < 0)
+			return resolved;
+		ByteArrayOutputStream decoded = new ByteArrayOutputStream(fragment.length());
+		for(int i = 0; i < fragment.length(); i++) {
+			char c = fragment.charAt(i);
+			if(c == '%' && i + 2 < fragment.length() && Character.digit(fragment.charAt(i + 1), 16) >= 0 && Character.digit(fragment.charAt(i + 2), 16) >= 0) {
+				decoded.write(Character.digit(fragment.charAt(i + 1), 16) * 16 + Character.digit(fragment.charAt(i + 2), 16));
+				i += 2;
+			} else {
+				byte[] bytes = String.valueOf(c).getBytes(StandardCharsets.UTF_8);
+				decoded.write(bytes, 0, bytes.length);
+			}
+		}
+		return resolved.substring(0, hash + 1) + new String(decoded.toByteArray(), StandardCharsets.UTF_8);
+	}
 
+	/**
+	 * Returns the id of an element ("$id" or "id", depending on the draft)
+	 * 
+	 * @param object The element
+	 * @return The id (null if there is no id)
+	 */
+	private String getId(JsonNode object) {
+		JsonNode idNode = object.has("$id") ? object.get("$id") : object.get("id");
+		return (idNode != null && idNode.isTextual()) ? idNode.asText() : null;
 	}
 
 	/**
-	 * Analyzes a fodler/file. If it is a folder, it recursively navigates to find the files.
-	 * Each inner folder becomes a UML package.
+	 * Escapes a reference token of a JSON Pointer (cf. Section 4 - RFC 6901)
 	 * 
-	 * @param inputFile A Folder or a file to analyze.
+	 * @param token The reference token (e.g., the name of a property)
+	 * @return The escaped token
 	 */
-	private void analyze(File inputFile) {
-		if(inputFile.isFile()) {
-			// If the file is NOT a valid JSON Schema, we skip it
-			try {
-				if(!JSONSchemaValidator.validate(inputFile).isSuccess()) {
-					System.err.println("The file " + inputFile.getAbsolutePath() + " is not a valid JSON Schema");
-					return;
-				}
-			} catch (IOException | ProcessingException e) {
-				System.err.println("The file " + inputFile.getAbsolutePath() + " is not a valid JSON file");
-				return;
-			}
-			analyzeSchema(inputFile);
-		} else if(inputFile.isDirectory()) {
-			Package oldPackage = umlPackage;
-			umlPackage = oldPackage.createNestedPackage(inputFile.getName());
-			for(File inFile: inputFile.listFiles()) 
-				analyze(inFile);
-			umlPackage = oldPackage;
-		} else
-			throw new JSONSchemaToUMLException("Invalid input");
+	private static String escape(String token) {
+		if(token.indexOf('~') < 0 && token.indexOf('/') < 0)
+			return token;
+		return token.replace("~", "~0").replace("/", "~1");
 	}
 
 	/**
-	 * Analyzes a file conforming to the JSON schema in order to create the corresponding UML elements (which will
-	 * be stored in both the oracle and the model)
+	 * Runs an analysis with an explicit stack of steps instead of the call stack, so that deeply nested schemas
+	 * can be analyzed (the time and memory needed are linear in their depth). The analyzers do their work and
+	 * schedule the analysis of the nested elements (and whatever comes after it) as steps (see {@link #schedule(Runnable)}).
+	 * The steps scheduled by a step run right after it, in the order they were scheduled and before the steps scheduled
+	 * previously, so the elements are visited (and created) in the same order as by a recursive traversal.
 	 * 
-	 * @param file The file to analyze
+	 * @param analysis The first step of the analysis
 	 */
-	private void analyzeSchema(File file) {
-		// Let's start with the root element of the file
-		JsonObject rootElement = null;
+	private void traverse(Runnable analysis) {
+		List<Runnable> outerSteps = scheduledSteps;
+		ArrayDeque<Runnable> pendingSteps = new ArrayDeque<>();
+		scheduledSteps = new ArrayList<>();
 		try {
-			JsonElement inputElement = (new JsonParser()).parse(new JsonReader(new FileReader(file)));
-			rootElement = inputElement.getAsJsonObject();
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
+			pendingSteps.push(analysis);
+			while(!pendingSteps.isEmpty()) {
+				pendingSteps.pop().run();
+				for(int i = scheduledSteps.size() - 1; i >= 0; i--)
+					pendingSteps.push(scheduledSteps.get(i));
+				scheduledSteps.clear();
+			}
+		} finally {
+			scheduledSteps = outerSteps;
+			if(outerSteps == null) {
+				constraints.flush();
+				canonicalNodes.clear();
+			}
 		}
+	}
 
-		String modelConceptName = file.getName().substring(0, file.getName().indexOf("."));
-		// Basic info from the schema
-		if(rootElement.has("id")) { 
-			String id = rootElement.get("id").getAsString();
-			JSONSchemaURI jsu = new JSONSchemaURI(id);
-			modelConceptName = jsu.digestIdName();
-		}
-		analyzeRootSchemaElement(modelConceptName, rootElement);
+	/**
+	 * Schedules a step of the analysis being run (see {@link #traverse(Runnable)}). Once an analyzer schedules
+	 * something, the rest of its work has to be scheduled too, as it comes after the steps already scheduled.
+	 * 
+	 * @param step The step
+	 */
+	private void schedule(Runnable step) {
+		scheduledSteps.add(step);
 	}
 
 	/**
@@ -258,32 +2009,41 @@ public class JSONSchemaToUML {
 	 * and therefore will become concepts
 	 * @param name The name of the element
 	 * @param rootElement The JSON root element
+	 * @param pointer The JSON Pointer of the element
 	 */
-	private void analyzeRootSchemaElement(String name, JsonObject rootElement) {
+	private void analyzeRootSchemaElement(String name, JsonNode rootElement, JSONPointer pointer) {
 		if(rootElement.has("type") || rootElement.has("allOf")) {
-			analyzeObject(name, rootElement);
-		} 
-		
+			analyzeObject(name, rootElement, pointer);
+		}
+
 		if(rootElement.has("definitions")) {
 			// Section 9 in json-validation
-			analyzeDefinitions(rootElement);
-		} 
+			schedule(() -> {
+				String outerBaseURI = baseURI, outerDocumentURI = documentURI;
+				analyzeDefinitions(rootElement, enterScope(rootElement, pointer, null));
+				schedule(() -> {
+					baseURI = outerBaseURI; documentURI = outerDocumentURI;
+				});
+			});
+		}
 	}
 
 	/**
 	 * Analyzer for objects in the JSON schema. Objects are normally mapped into a corresponding UML class.
+	 * The class is created right away, the analysis of its properties is scheduled.
 	 * 
 	 * @param modelConceptName The name of the element
 	 * @param object The JSON object element
+	 * @param pointer The JSON Pointer of the element
 	 */
-	private Class analyzeObject(String modelConceptName, JsonObject object) {
+	private Class analyzeObject(String modelConceptName, JsonNode object, JSONPointer pointer) {
 		// Creating the concept
 		String camelCasedModelConceptName = modelConceptName.substring(0, 1).toUpperCase() + modelConceptName.substring(1);
-		Class concept = umlPackage.createOwnedClass(camelCasedModelConceptName, false);
+		Class concept = elementFactory.createClass(umlPackage, camelCasedModelConceptName);
 
 		if(object.has("title")) {
 			// 10.1 section in json-validation
-			String title = object.get("title").getAsString();
+			String title = object.get("title").asText();
 			Comment comment = UMLFactory.eINSTANCE.createComment();
 			comment.setBody("Title: " + title);
 			concept.getOwnedComments().add(comment);
@@ -291,7 +2051,7 @@ public class JSONSchemaToUML {
 
 		if(object.has("description")) {
 			// 10.1 section in json-validation
-			String title = object.get("description").getAsString();
+			String title = object.get("description").asText();
 			Comment comment = UMLFactory.eINSTANCE.createComment();
 			comment.setBody("Description: " + title);
 			concept.getOwnedComments().add(comment);
@@ -299,75 +2059,85 @@ public class JSONSchemaToUML {
 
 		// Storing the concept
 		oracle.put(modelConceptName, concept);
+		indexConcept(concept, pointer);
+		String outerBaseURI = baseURI, outerDocumentURI = documentURI;
+		JSONPointer scopePointer = enterScope(object, pointer, concept);
 
 		if(object.has("allOf")) {
 			// allOf represents a concept which has to successfully validate against all the schema elements
 			// defined inside. We create an element which includes all the information described by allOf
-			JsonArray allOfArray = object.get("allOf").getAsJsonArray();
-			for(JsonElement allOfElement : allOfArray) {
-				JsonObject allOfElementObj = allOfElement.getAsJsonObject();
+			JsonNode allOfArray = object.get("allOf");
+			int allOfIndex = 0;
+			for(JsonNode allOfElementObj : allOfArray) {
+				JSONPointer allOfPointer = scopePointer.append("/allOf/" + allOfIndex++);
 				if(allOfElementObj.has("$ref")) {
 					// We interpret $ref elements as super classes for this element
 					// As such, the element should have been analyzed previously
-					String ref = allOfElementObj.get("$ref").getAsString();
-					JSONSchemaURI jsu = new JSONSchemaURI(ref);
-					// We mark the concept to have a super class, it will be resolved
-					// afterwards by the {@link #resolveSuperclasses()} method
-					superclassesFound.put(jsu, concept);
+					schedule(() -> {
+						String ref = allOfElementObj.get("$ref").asText();
+						// We mark the concept to have a super class, it will be resolved
+						// afterwards by the {@link #resolveSuperclasses()} method
+						ProxySuperclass proxy = new ProxySuperclass();
+						proxy.subclass = concept;
+						proxy.ref = JSONSchemaURI.of(ref);
+						proxy.target = reference(ref);
+						superclassesFound.add(proxy);
+					});
 				} else if(allOfElementObj.has("properties")) {
 					// Properties elements will become the attributes/references of the element
-					JsonObject propertiesObj = allOfElementObj.get("properties").getAsJsonObject();
-					for (Entry<String, JsonElement> entry : propertiesObj.entrySet()) {
-						String propertyKey = entry.getKey();
-						JsonObject propertyObj = propertiesObj.get(propertyKey).getAsJsonObject();
-						analyzeProperty(concept, propertyKey, propertyObj);
+					JsonNode propertiesObj = allOfElementObj.get("properties");
+					for (Iterator<Entry<String, JsonNode>> it = propertiesObj.fields(); it.hasNext(); ) {
+						Entry<String, JsonNode> entry = it.next();
+						schedule(() -> analyzeProperty(concept, entry.getKey(), entry.getValue(), allOfPointer.append("/properties/" + escape(entry.getKey()))));
 					}
-				} 
+				}
 			}
 		} else if (object.has("oneOf")) { 
-			analyzeOneOf(concept, concept.getName(), concept.getName() + "Option", object, false);
+			schedule(() -> analyzeOneOf(concept, concept.getName(), concept.getName() + "Option", object, false, scopePointer));
 		} else if (object.has("properties")) {
 			// When an element has directly "properties" may mean that it does not have superclasses
 			// It is also used in definitions
-			JsonObject propertiesObj = object.get("properties").getAsJsonObject(); 
-			for (Entry<String, JsonElement> entry : propertiesObj.entrySet()) {
-				String propertyKey = entry.getKey();
-				JsonObject propertyObj = propertiesObj.get(propertyKey).getAsJsonObject();
-				analyzeProperty(concept, propertyKey, propertyObj);
+			JsonNode propertiesObj = object.get("properties");
+			for (Iterator<Entry<String, JsonNode>> it = propertiesObj.fields(); it.hasNext(); ) {
+				Entry<String, JsonNode> entry = it.next();
+				schedule(() -> analyzeProperty(concept, entry.getKey(), entry.getValue(), scopePointer.append("/properties/" + escape(entry.getKey()))));
 			}
-		} else if (object.has("type") && !object.get("type").getAsString().equals("object")) {
+		} else if (object.has("type") && !"object".equals(getTypeName(object.get("type")))) {
 			// Special case: the element is not really an object
 			// We will create a fake class with an attribute including the information schema of the
 			// JSON object
-			analyzeProperty(concept, concept.getName()+ "Attribute", object);
+			schedule(() -> analyzeProperty(concept, concept.getName()+ "Attribute", object, scopePointer));
 		}
-		
+
 		if (object.has("required")) {
 			// 6.5.3 section in json-validation
 			// This constraint specifies the set of properties that have to be there (e.g., the min
 			// cardinality is 1. Only properties that are not coming from arrays are touched (i.e., 
 			// those properties with upper limit <= 1)
-			for(JsonElement reqElem : object.get("required").getAsJsonArray()) {
-				String reqElemString = reqElem.getAsString();
-				for(Property property : concept.getOwnedAttributes()) {
-					if(property.getName().equals(reqElemString) && property.getUpper() < 2) {
+			schedule(() -> {
+				for(JsonNode reqElem : object.get("required")) {
+					Property property = getAttribute(concept, reqElem.asText());
+					if(property != null)
 						property.setLower(1);
-						break;
-					}
 				}
-			}
+			});
 		}
 
+		schedule(() -> {
+			baseURI = outerBaseURI; documentURI = outerDocumentURI;
+		});
 		return concept;
 	}
 
 	/**
-	 * Analyzes a property for an object/concept
+	 * Analyzes a property for an object/concept. The analysis of the inner concepts of the property (if any) is scheduled,
+	 * and so is the rest of the analysis of the property
 	 * @param concept The concept which includes such property
 	 * @param propertyName The name of the property
 	 * @param object The JSON object element to analyze
+	 * @param pointer The JSON Pointer of the element
 	 */
-	private void analyzeProperty(Class concept, String propertyName, JsonObject object) {
+	private void analyzeProperty(Class concept, String propertyName, JsonNode object, JSONPointer pointer) {
 		Element createdElement = null;
 		boolean nullable = false;
 
@@ -376,26 +2146,23 @@ public class JSONSchemaToUML {
 			// According to section 6.1.1 in json-schema-validation, type can be either a string
 			// or an array. If it is array, we only consider the first element, and take into 
 			// consideration the second value if it is a "null" value to set cardinality.
-			String propertyObjType = null;
-			if (object.get("type") instanceof JsonPrimitive) {
-				propertyObjType= object.get("type").getAsString();
-			} else if(object.get("type") instanceof JsonArray) {
-				JsonArray typeArray = (JsonArray) object.get("type").getAsJsonArray();
-				propertyObjType = typeArray.get(0).getAsString();
-				if(typeArray.size() > 1) {
-					if(typeArray.get(1).getAsString().equals("null"))
+			JsonNode typeNode = object.get("type");
+			String propertyObjType = getTypeName(typeNode);
+			if(typeNode.isArray()) {
+				if(typeNode.size() > 1) {
+					if(typeNode.get(1).asText().equals("null"))
 						nullable = true; // TODO Consider in the metamodel. how exactly?
-				} 
+				}
 			}
-			
+
 			// We analyze the type
 			Type modelAttType = null;
 			if(object.has("enum")) {
 				// Section 6.1.2. We create an enumeration
 				createdElement = analyzeEnumProperty(concept, propertyName, object);
-			} else if (propertyObjType.equals("string")) {
+			} else if ("string".equals(propertyObjType)) {
 				if(object.has("format")) {
-					String propertyFormat = object.get("format").getAsString();
+					String propertyFormat = object.get("format").asText();
 					if(propertyFormat.equals("date-time")) {
 						modelAttType = getPrimitiveType("Date");
 					}
@@ -403,138 +2170,204 @@ public class JSONSchemaToUML {
 				if(modelAttType == null)
 					modelAttType = getPrimitiveType("String");
 
-				if(object.has("maxLength"))
-					// Section 6.3.1 in json-schema-validation. Resolved as OCL
-					addConstraint(concept, propertyName, "maxLengthConstraint",
-							"self." + propertyName + ".size() <= " + object.get("maxLength").getAsString());
-				if(object.has("minLength"))
-					// Section 6.3.2 in json-schema-validation. Resolved as OCL
-					addConstraint(concept, propertyName, "minLengthConstraint",
-							"self." + propertyName + ".size() >= " + object.get("minLength").getAsString());
+				// Sections 6.3.1 and 6.3.2 in json-schema-validation. Resolved as OCL
+				constraints.emit(concept, propertyName, object, ConstraintEmitter.STRING_TEMPLATES);
 				if(object.has("pattern")) {
 					// Section 6.3.3 in json-schema-validation. Resolved as OCL, possible?
 					// TODO 6.3.3 in json-schema-validation
 				}
-				createdElement = concept.createOwnedAttribute(propertyName, modelAttType);
-			} else if(propertyObjType.equals("integer") || propertyObjType.equals("number")) {
+				createdElement = elementFactory.createAttribute(concept, propertyName, modelAttType);
+			} else if("integer".equals(propertyObjType) || "number".equals(propertyObjType)) {
 				modelAttType = getPrimitiveType("Integer");
-				createdElement = concept.createOwnedAttribute(propertyName, modelAttType);
-				if(object.has("multipleOf"))
-					// Section 6.2.1 in json-schema-validation. Resolved as OCL
-					addConstraint(concept, propertyName, "multipleOfConstraint",
-							"self." + propertyName + ".div("+object.get("multipleOf").getAsString()+") = 0");
-				if(object.has("maximum"))
-					// Section 6.2.2 in json-schema-validation. Resolved as OCL
-					addConstraint(concept, propertyName, "maximumConstraint",
-							"self." + propertyName + " <= " + object.get("maximum").getAsString());
-				if(object.has("exclusiveMaximum"))
-					// Section 6.2.3 in json-schema-validation. Resolved as OCL
-					addConstraint(concept, propertyName, "exclusiveMaximumConstraint",
-							"self." + propertyName + " < " + object.get("exclusiveMaximum").getAsString());
-				if(object.has("minimum"))
-					// Section 6.2.4 in json-schema-validation. Resolved as OCL
-					addConstraint(concept, propertyName, "minimumConstraint",
-							"self." + propertyName + " >= " + object.get("minimum").getAsString());
-				if(object.has("exclusiveMinimum"))
-					// Section 6.2.5 in json-schema-validation. Resolved as OCL
-					addConstraint(concept, propertyName, "exclusiveMinimumConstraint",
-							"self." + propertyName + " > " + object.get("exclusiveMinimum").getAsString());
-
-			} else if(propertyObjType.equals("boolean")) {
-				createdElement = concept.createOwnedAttribute(propertyName, getPrimitiveType("Boolean"));
-			} else if(propertyObjType.equals("array")) {
+				createdElement = elementFactory.createAttribute(concept, propertyName, modelAttType);
+				// Sections 6.2.1 to 6.2.5 in json-schema-validation. Resolved as OCL
+				constraints.emit(concept, propertyName, object, ConstraintEmitter.NUMERIC_TEMPLATES);
+
+			} else if("boolean".equals(propertyObjType)) {
+				createdElement = elementFactory.createAttribute(concept, propertyName, getPrimitiveType("Boolean"));
+			} else if("array".equals(propertyObjType)) {
 				// Section 6.4.1 in json-schema-validation. 
-				
+
 				// If the items key is an array, we only consider the first one
 				// (as in UML we cannot have a multi-valued attribute with multitypes
 				// TODO Should we created a hierarchy?
-				
-				JsonObject itemsObject = null;
-				if(object.has("items") && object.get("items").isJsonArray()) {
-					itemsObject = object.get("items").getAsJsonArray().get(0).getAsJsonObject();
-				} else {
-					itemsObject = object.get("items").getAsJsonObject();
+
+				JsonNode itemsObject = object.get("items");
+				JSONPointer itemsPointer = pointer.append("/items");
+				if(itemsObject != null && itemsObject.isArray()) {
+					itemsObject = itemsObject.get(0);
+					itemsPointer = itemsPointer.append("/0");
 				}
-				
-				if(object.has("items")) {
+
+				if(itemsObject != null) {
 					if(itemsObject.has("enum")) {
 						createdElement = analyzeEnumProperty(concept, propertyName, itemsObject);
 						((Property) createdElement).setUpper(-1);
-					} else if(itemsObject.has("type") && itemsObject.get("type").getAsString().equals("string")) { 
-						createdElement = concept.createOwnedAttribute(propertyName, getPrimitiveType("String"));
+					} else if(itemsObject.has("type") && "string".equals(getTypeName(itemsObject.get("type")))) { 
+						createdElement = elementFactory.createAttribute(concept, propertyName, getPrimitiveType("String"));
 						((Property) createdElement).setUpper(-1);
-					} else if(itemsObject.has("type") && itemsObject.get("type").getAsString().equals("number")) { 
-						createdElement = concept.createOwnedAttribute(propertyName, getPrimitiveType("Integer"));
+					} else if(itemsObject.has("type") && "number".equals(getTypeName(itemsObject.get("type")))) { 
+						createdElement = elementFactory.createAttribute(concept, propertyName, getPrimitiveType("Integer"));
 						((Property) createdElement).setUpper(-1);
 					} else if (itemsObject.has("oneOf")) {
-						Association oneOfAssociation = analyzeOneOf(concept, propertyName, propertyName + "Option", itemsObject, true);
+						Association oneOfAssociation = analyzeOneOf(concept, propertyName, propertyName + "Option", itemsObject, true, itemsPointer);
+						schedule(() -> indexAttribute(concept, propertyName, oneOfAssociation));
 					} else if (itemsObject.has("anyOf")) {
-						Association anyOfAssociation = analyzeAnyOf(concept, propertyName, propertyName + "Option", itemsObject);
+						Association anyOfAssociation = analyzeAnyOf(concept, propertyName, propertyName + "Option", itemsObject, itemsPointer);
+						schedule(() -> indexAttribute(concept, propertyName, anyOfAssociation));
 					} else if (itemsObject.has("allOf")) {
 						// TODO
 					} else if (itemsObject.has("properties")) {
 						// If an array includes an object with properties key it means that it defines an
 						// inner concept so we create a new UML class
 						String propertyConceptName = propertyName.substring(0, 1).toUpperCase() + propertyName.substring(1, propertyName.length());
-						Class propertyConcept = umlPackage.createOwnedClass(propertyConceptName, false);
+						String key = structuralKey("items", itemsObject);
+						Class propertyConcept = (Class) reuseStructuralType(key, itemsPointer);
+						if(propertyConcept == null) {
+							int start = umlPackage.getPackagedElements().size();
+							Class itemsConcept = elementFactory.createClass(umlPackage, propertyConceptName);
+							indexConcept(itemsConcept, itemsPointer);
 
-						JsonObject propertiesObj = itemsObject.get("properties").getAsJsonObject(); 
-						for (Entry<String, JsonElement> entry : propertiesObj.entrySet()) {
-							String propertyKey = entry.getKey();
-							JsonObject propertyObj = propertiesObj.get(propertyKey).getAsJsonObject();
-							analyzeProperty(propertyConcept, propertyKey, propertyObj);
+							JsonNode propertiesObj = itemsObject.get("properties");
+							for (Iterator<Entry<String, JsonNode>> it = propertiesObj.fields(); it.hasNext(); ) {
+								Entry<String, JsonNode> entry = it.next();
+								JSONPointer propertyPointer = itemsPointer.append("/properties/" + escape(entry.getKey()));
+								schedule(() -> analyzeProperty(itemsConcept, entry.getKey(), entry.getValue(), propertyPointer));
+							}
+							schedule(() -> addStructuralType(key, itemsConcept, start));
+							propertyConcept = itemsConcept;
 						}
-						
+
 						int upper = -1;
 						int lower = 0;
 						if(object.has("minItems"))
-							lower = object.get("minItems").getAsInt();
+							lower = object.get("minItems").asInt();
 						if(object.has("maxItems"))
-							upper = object.get("maxItems").getAsInt();
-						createdElement = concept.createAssociation(true, AggregationKind.NONE_LITERAL, propertyName, lower, upper, propertyConcept, false, AggregationKind.NONE_LITERAL, concept.getName(), 1, 1);
+							upper = object.get("maxItems").asInt();
+						Class associatedConcept = propertyConcept;
+						int associatedLower = lower, associatedUpper = upper;
+						// The association is created once the inner concept is analyzed
+						schedule(() -> completeProperty(concept, propertyName, object, elementFactory.createAssociation(concept, true, AggregationKind.NONE_LITERAL, propertyName, associatedLower, associatedUpper, associatedConcept, false, AggregationKind.NONE_LITERAL, concept.getName(), 1, 1)));
 					} else if(itemsObject.has("$ref")) {
 						analyzeRef(concept, propertyName, itemsObject);
 					}
-				} else if(object.has("items") && object.get("items").isJsonArray()) {
-					JsonArray itemsObjectArray = object.get("items").getAsJsonArray();
 				}
-					
+
 				if(createdElement != null && createdElement instanceof Property) {
 					if(object.has("maxItems")) {
 						// Section 6.4.3 in json-schema-validation. 
-						int maxItems = object.get("maxItems").getAsInt();
+						int maxItems = object.get("maxItems").asInt();
 						((Property) createdElement).setUpper(maxItems);
 					}
 					if(object.has("minItems")) {
 						// Section 6.4.4 in json-schema-validation. 
-						int minItems = object.get("minItems").getAsInt();
+						int minItems = object.get("minItems").asInt();
 						((Property) createdElement).setLower(minItems);
 					}
 				}
-			} else if (propertyObjType.equals("object")) {
+			} else if ("object".equals(propertyObjType)) {
 				String toCamelCase = propertyName.substring(0, 1).toUpperCase() + propertyName.substring(1, propertyName.length());
-				Class target = analyzeObject(toCamelCase, object);
-				createdElement = concept.createAssociation(true, AggregationKind.NONE_LITERAL, propertyName, 0, 1, target, false, AggregationKind.NONE_LITERAL, concept.getName(), 1, 1);
-			} 
+				String key = structuralKey("object", object);
+				Class target = (Class) reuseStructuralType(key, pointer);
+				if(target != null) {
+					oracle.put(toCamelCase, target);
+				} else {
+					int start = umlPackage.getPackagedElements().size();
+					target = analyzeObject(toCamelCase, object, pointer);
+					Class objectConcept = target;
+					schedule(() -> addStructuralType(key, objectConcept, start));
+				}
+				Class associatedConcept = target;
+				// The association is created once the inner concept is analyzed
+				schedule(() -> completeProperty(concept, propertyName, object, elementFactory.createAssociation(concept, true, AggregationKind.NONE_LITERAL, propertyName, 0, 1, associatedConcept, false, AggregationKind.NONE_LITERAL, concept.getName(), 1, 1)));
+			}
 		} else if(object.has("$ref")) {
 			analyzeRef(concept, propertyName, object);
 		} else if(object.has("oneOf")) {
 			// Section 6.7.3 in json-schema-validation
-			Association oneOfAssociation = analyzeOneOf(concept, propertyName, concept.getName() + "Option", object, true);
+			Association oneOfAssociation = analyzeOneOf(concept, propertyName, concept.getName() + "Option", object, true, pointer);
+			schedule(() -> indexAttribute(concept, propertyName, oneOfAssociation));
 		} else if(object.has("anyOf")) {
 			// Section 6.7.2 in json-schema-validation
-			Association oneOfAssociation = analyzeAnyOf(concept, propertyName, concept.getName() + "Option", object);
+			Association oneOfAssociation = analyzeAnyOf(concept, propertyName, concept.getName() + "Option", object, pointer);
+			schedule(() -> indexAttribute(concept, propertyName, oneOfAssociation));
 		}
 
+		completeProperty(concept, propertyName, object, createdElement);
+	}
+
+	/**
+	 * Completes the analysis of a property once its attribute/association is created: the element is indexed and
+	 * the description of the property is added as a comment
+	 * @param concept The concept which includes such property
+	 * @param propertyName The name of the property
+	 * @param object The JSON object element analyzed
+	 * @param createdElement The attribute or association created for the property (null if nothing was created)
+	 */
+	private void completeProperty(Class concept, String propertyName, JsonNode object, Element createdElement) {
+		if(createdElement != null)
+			indexAttribute(concept, propertyName, createdElement);
+
 		// We check if there is a description and add such info as comment to the created element
 		if(createdElement != null && object.has("description")) {
-			String description = object.get("description").getAsString();
+			String description = object.get("description").asText();
 			Comment comment = UMLFactory.eINSTANCE.createComment();
 			comment.setBody("Description: " + description);
 			createdElement.getOwnedComments().add(comment);
 		}
 	}
 
+	/**
+	 * Indexes the attribute created for a property of a concept (see {@link #attributeIndex}). If the property
+	 * was mapped as an association, the end owned by the concept is indexed.
+	 * 
+	 * @param concept The concept which includes such property
+	 * @param propertyName The name of the property
+	 * @param createdElement The attribute or association created for the property
+	 */
+	private void indexAttribute(Class concept, String propertyName, Element createdElement) {
+		Property attribute = null;
+		if(createdElement instanceof Property) {
+			attribute = (Property) createdElement;
+		} else if(createdElement instanceof Association) {
+			for(Property end : ((Association) createdElement).getMemberEnds())
+				if(end.getClass_() == concept && propertyName.equals(end.getName()))
+					attribute = end;
+		}
+		if(attribute != null && attribute.getClass_() == concept) {
+			HashMap<String, Property> attributes = attributeIndex.get(concept);
+			if(attributes == null) {
+				attributes = new HashMap<>();
+				attributeIndex.put(concept, attributes);
+			}
+			attributes.putIfAbsent(propertyName, attribute);
+		}
+	}
+
+	/**
+	 * Returns the attribute of a concept with a given name which is not multivalued (i.e., its upper 
+	 * limit is lower than 2), or null if there is no one
+	 * 
+	 * @param concept The concept
+	 * @param propertyName The name of the attribute
+	 * @return The attribute found (null if nothing)
+	 */
+	private Property getAttribute(Class concept, String propertyName) {
+		HashMap<String, Property> attributes = attributeIndex.get(concept);
+		Property found = (attributes == null) ? null : attributes.get(propertyName);
+		if(found != null && found.getUpper() >= 2) {
+			// Several attributes share the name (e.g., in allOf), the rest of them may be single-valued
+			found = null;
+			for(Property property : concept.getOwnedAttributes()) {
+				if(property.getName().equals(propertyName) && property.getUpper() < 2) {
+					found = property;
+					break;
+				}
+			}
+		}
+		return found;
+	}
+
 	/**
 	 * Analyzes $ref elements. They are usualy pointers to other elements so an association proxy is created
 	 * 
@@ -542,12 +2375,12 @@ public class JSONSchemaToUML {
 	 * @param propertyName The attribute which is a $ref
 	 * @param object The object including the $ref information
 	 */
-	private void analyzeRef(Class concept, String propertyName, JsonObject object) {
+	private void analyzeRef(Class concept, String propertyName, JsonNode object) {
 		if(!object.has("$ref")) 
 			throw new JSONSchemaToUMLException("The object must include an '$ref' key");
-		
-		String ref = object.get("$ref").getAsString();
-		JSONSchemaURI jsu = new JSONSchemaURI(ref);
+
+		String ref = object.get("$ref").asText();
+		JSONSchemaURI jsu = JSONSchemaURI.of(ref);
 		String refClassName = jsu.digestFragmentName();
 		ProxyAssociation proxy = new ProxyAssociation();
 		proxy.sourceComposition = true; proxy.targetComposition = false;
@@ -556,12 +2389,15 @@ public class JSONSchemaToUML {
 		proxy.sourceLower = 0; proxy.targetLower = 1;
 		proxy.sourceUpper = 1; proxy.targetUpper = 1;
 		proxy.owner = concept;
-		associationsFound.put(jsu, proxy);
+		proxy.ref = jsu;
+		proxy.target = reference(ref);
+		associationsFound.add(proxy);
 	}
 
 	/**
 	 * Factorizes the behavior for dealing with OneOf schema element.
 	 * We create a hierarchy for the options and then an associationg pointing at the hierarchy root
+	 * (the analysis of the options is scheduled)
 	 * 
 	 * Section 6.7.3 in json-schema-validation. 
 	 * 
@@ -570,48 +2406,55 @@ public class JSONSchemaToUML {
 	 * @param conceptOptionName The name to give to the option class
 	 * @param object The JSON Object
 	 * @param mapAsAssociation If true, the options are used as association. Otherwise it will be a hierarchy
+	 * @param pointer The JSON Pointer of the element
 	 * @return The association
 	 */
-	private Association analyzeOneOf(Class concept, String propertyName, String conceptOptionName, JsonObject object, boolean mapAsAssociation) {
+	private Association analyzeOneOf(Class concept, String propertyName, String conceptOptionName, JsonNode object, boolean mapAsAssociation, JSONPointer pointer) {
 		Association createdElement = null;
-		
+
 		Class optionClass = null;
 		if(mapAsAssociation) {
 			String oneOfName = propertyName.substring(0, 1).toUpperCase() + propertyName.substring(1, propertyName.length()) + "Option";
-			optionClass = umlPackage.createOwnedClass(oneOfName, false);
+			optionClass = elementFactory.createClass(umlPackage, oneOfName);
 			optionClass.setIsAbstract(true);
-			createdElement = concept.createAssociation(true, AggregationKind.NONE_LITERAL, propertyName, 1, 1, optionClass, false, AggregationKind.NONE_LITERAL, concept.getName(), 1, 1);
+			createdElement = elementFactory.createAssociation(concept, true, AggregationKind.NONE_LITERAL, propertyName, 1, 1, optionClass, false, AggregationKind.NONE_LITERAL, concept.getName(), 1, 1);
 		} else {
 			optionClass = concept;
 		}
 
-		JsonArray oneOfArray = object.get("oneOf").getAsJsonArray();
+		JsonNode oneOfArray = object.get("oneOf");
 		char[] alphabet = "ABCDEFGHIJKLMNOPQRSTUWXYZ".toCharArray();
 		int counter = 0;
-		for(JsonElement arrayElement : oneOfArray ) {
-			if (arrayElement instanceof JsonObject) {
-				JsonObject arrayObject = (JsonObject) arrayElement;
-				String conceptElementName = conceptOptionName + alphabet[counter++];
-				if(arrayObject.has("type") || arrayObject.has("$ref")) {
-					// We are dealing with an inline object (no schema header)
-					Class conceptElement = umlPackage.createOwnedClass(conceptElementName, false);
-					analyzeProperty(conceptElement, "optionAttribute", arrayObject);
-					conceptElement.getSuperClasses().add(optionClass);	
-				} else if(arrayObject.has("properties" )) {
-					// We are deadling with a schema definition (with headers like "title")
-					Class conceptElement = analyzeObject(conceptElementName, arrayObject);
-					conceptElement.getSuperClasses().add(optionClass);	
-				}
+		int optionIndex = 0;
+		Class superClass = optionClass;
+		for(JsonNode arrayObject : oneOfArray ) {
+			JSONPointer optionPointer = pointer.append("/oneOf/" + optionIndex++);
+			if (arrayObject.isObject()) {
+				int letter = counter++;
+				schedule(() -> {
+					String conceptElementName = conceptOptionName + alphabet[letter];
+					if(arrayObject.has("type") || arrayObject.has("$ref")) {
+						// We are dealing with an inline object (no schema header)
+						Class conceptElement = elementFactory.createClass(umlPackage, conceptElementName);
+						analyzeProperty(conceptElement, "optionAttribute", arrayObject, optionPointer);
+						schedule(() -> conceptElement.getSuperClasses().add(superClass));
+					} else if(arrayObject.has("properties" )) {
+						// We are deadling with a schema definition (with headers like "title")
+						Class conceptElement = analyzeObject(conceptElementName, arrayObject, optionPointer);
+						schedule(() -> conceptElement.getSuperClasses().add(superClass));
+					}
+				});
 			}
 		}
-		
+
 		return createdElement;
 	}
-	
+
 	/**
 	 * Factorizes the behavior for dealing with AnyOf schema element.
 	 * This method is almost a mirror of {@link JSONSchemaToUML.analyzeOneOf}
 	 * We create a hierarchy for the options and then an associationg pointing at the hierarchy root
+	 * (the analysis of the options is scheduled)
 	 * 
 	 * Section 6.7.2 in json-schema-validation. 
 	 * 
@@ -619,29 +2462,34 @@ public class JSONSchemaToUML {
 	 * @param propertyName The name of the property
 	 * @param optionName The name to give to the option class
 	 * @param object The JSON Object
+	 * @param pointer The JSON Pointer of the element
 	 * @return The association
 	 */
-	private Association analyzeAnyOf(Class concept, String propertyName, String optionName, JsonObject object) {
+	private Association analyzeAnyOf(Class concept, String propertyName, String optionName, JsonNode object, JSONPointer pointer) {
 		Association createdElement = null;
-		
+
 		String oneOfName = propertyName.substring(0, 1).toUpperCase() + propertyName.substring(1, propertyName.length()) + "Option";
-		Class optionClass = umlPackage.createOwnedClass(oneOfName, false);
+		Class optionClass = elementFactory.createClass(umlPackage, oneOfName);
 		optionClass.setIsAbstract(true);
-		createdElement = concept.createAssociation(true, AggregationKind.NONE_LITERAL, propertyName, 1, -1, optionClass, false, AggregationKind.NONE_LITERAL, concept.getName(), 1, 1);
+		createdElement = elementFactory.createAssociation(concept, true, AggregationKind.NONE_LITERAL, propertyName, 1, -1, optionClass, false, AggregationKind.NONE_LITERAL, concept.getName(), 1, 1);
 
-		JsonArray oneOfArray = object.get("anyOf").getAsJsonArray();
+		JsonNode oneOfArray = object.get("anyOf");
 		char[] alphabet = "ABCDEFGHIJKLMNOPQRSTUWXYZ".toCharArray();
 		int counter = 0;
-		for(JsonElement arrayElement : oneOfArray ) {
-			if (arrayElement instanceof JsonObject) {
-				JsonObject arrayObject = (JsonObject) arrayElement;
-				String conceptElementName = optionName + alphabet[counter++];
-				Class conceptElement = umlPackage.createOwnedClass(conceptElementName, false);
-				analyzeProperty(conceptElement, "optionAttribute", arrayObject);
-				conceptElement.getSuperClasses().add(optionClass);
+		int optionIndex = 0;
+		for(JsonNode arrayObject : oneOfArray ) {
+			JSONPointer optionPointer = pointer.append("/anyOf/" + optionIndex++);
+			if (arrayObject.isObject()) {
+				int letter = counter++;
+				schedule(() -> {
+					String conceptElementName = optionName + alphabet[letter];
+					Class conceptElement = elementFactory.createClass(umlPackage, conceptElementName);
+					analyzeProperty(conceptElement, "optionAttribute", arrayObject, optionPointer);
+					schedule(() -> conceptElement.getSuperClasses().add(optionClass));
+				});
 			}
 		}
-		
+
 		return createdElement;
 	}
 	
@@ -656,36 +2504,183 @@ public class JSONSchemaToUML {
 	 * @param object The JSON Object
 	 * @return The property created
 	 */
-	private Property analyzeEnumProperty(Class concept, String propertyName, JsonObject object) {
+	private Property analyzeEnumProperty(Class concept, String propertyName, JsonNode object) {
 		if(!object.has("enum")) 
 			throw new JSONSchemaToUMLException("The object must include an 'enum' key");
 			
-		JsonArray enumValues = object.get("enum").getAsJsonArray();
-		Enumeration enumeration = umlPackage.createOwnedEnumeration(propertyName+"Enum");
-		for(JsonElement enumValueElem : enumValues) {
-			String enumValue = enumValueElem.getAsString();
-			enumeration.getOwnedLiterals().add(enumeration.createOwnedLiteral(enumValue));
+		JsonNode enumValues = object.get("enum");
+		String key = structuralKey("enum", enumValues);
+		Enumeration enumeration = (Enumeration) reuseStructuralType(key, null);
+		if(enumeration == null) {
+			int start = umlPackage.getPackagedElements().size();
+			enumeration = elementFactory.createType(umlPackage, UMLFactory.eINSTANCE.createEnumeration(), propertyName+"Enum");
+			for(JsonNode enumValueElem : enumValues) {
+				String enumValue = enumValueElem.asText();
+				enumeration.getOwnedLiterals().add(enumeration.createOwnedLiteral(enumValue));
+			}
+			addStructuralType(key, enumeration, start);
 		}
-		return concept.createOwnedAttribute(propertyName, enumeration); 
+		return elementFactory.createAttribute(concept, propertyName, enumeration); 
 	}
 	
 	/**
-	 * Adds a OCL constraint to a concept
-	 * @param concept The concept which holds the constraint
-	 * @param constraintName The name of the constraint (will be eventually formed
-	 *                       as conceptName-constraintName-constraintType
-	 * @param constraintType The type of the constraint being applied (e.g., macLengthConstraint)
-	 * @param constraintExp The OCL expression
+	 * Computes the key of an inline sub-schema for the structural deduplication, i.e., the digest of its canonical
+	 * form (see {@link #canonicalize(JsonNode)}). If the sub-schema includes references, the base URI they are resolved
+	 * against is part of the key.
+	 * 
+	 * @param kind The kind of type created for the sub-schema (e.g., "object"), as the same sub-schema may be mapped differently
+	 * @param schema The sub-schema
+	 * @return The key (null if the deduplication is disabled or the sub-schema includes ids)
+	 */
+	private String structuralKey(String kind, JsonNode schema) {
+		if(!deduplicate)
+			return null;
+		CanonicalNode node = canonicalize(schema);
+		if((node.keywords & ID_KEYWORD) != 0)
+			return null;
+		StringBuilder canonical = new StringBuilder();
+		if((node.keywords & REF_KEYWORD) != 0)
+			canonical.append(baseURI).append(' ');
+		canonical.append(kind).append(':').append(node.digest);
+		return ValidationCache.digest(canonical.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Returns the canonical form of a JSON element (see {@link #canonicalNodes}). The canonical form of an element
+	 * is its text with the members of objects sorted by name and the nested objects/arrays replaced by the digests
+	 * of their own canonical forms, so two elements have the same form if they have the same contents. The forms
+	 * are computed bottom-up with an explicit stack, and only for the nodes not found in {@link #canonicalNodes}.
+	 * 
+	 * @param node The JSON element
+	 * @return The canonical form
+	 */
+	private CanonicalNode canonicalize(JsonNode node) {
+		ArrayDeque<JsonNode> pending = new ArrayDeque<>();
+		pending.push(node);
+		while(!pending.isEmpty()) {
+			JsonNode element = pending.peek();
+			if(canonicalNodes.containsKey(element)) {
+				pending.pop();
+				continue;
+			}
+			boolean ready = true;
+			for(JsonNode child : element) {
+				if(child.isContainerNode() && !canonicalNodes.containsKey(child)) {
+					pending.push(child);
+					ready = false;
+				}
+			}
+			if(ready)
+				canonicalNodes.put(pending.pop(), canonicalForm(element));
+		}
+		return canonicalNodes.get(node);
+	}
+
+	/**
+	 * Computes the canonical form of a JSON element whose nested objects/arrays are already in {@link #canonicalNodes}
+	 * 
+	 * @param element The JSON element
+	 * @return The canonical form
+	 */
+	private CanonicalNode canonicalForm(JsonNode element) {
+		CanonicalNode result = new CanonicalNode();
+		StringBuilder canonical = new StringBuilder();
+		if(element.isObject()) {
+			List<String> names = new ArrayList<>();
+			for(Iterator<String> it = element.fieldNames(); it.hasNext(); )
+				names.add(it.next());
+			names.sort(null);
+			canonical.append('{');
+			for(String name : names) {
+				JsonNode value = element.get(name);
+				if(value.isTextual()) {
+					if(name.equals("$ref"))
+						result.keywords |= REF_KEYWORD;
+					else if(name.equals("id") || name.equals("$id"))
+						result.keywords |= ID_KEYWORD;
+				}
+				canonical.append(new TextNode(name).toString()).append(':');
+				result.keywords |= appendCanonical(value, canonical);
+				canonical.append(',');
+			}
+			canonical.append('}');
+		} else if(element.isArray()) {
+			canonical.append('[');
+			for(JsonNode value : element) {
+				result.keywords |= appendCanonical(value, canonical);
+				canonical.append(',');
+			}
+			canonical.append(']');
+		} else {
+			canonical.append(element.toString());
+		}
+		result.digest = ValidationCache.digest(canonical.toString().getBytes(StandardCharsets.UTF_8));
+		return result;
+	}
+
+	/**
+	 * Writes a member of a JSON element in the canonical form of the element: its digest if it is an object/array
+	 * (prefixed with "#", which cannot start a value), or its text otherwise
+	 * 
+	 * @param value The member
+	 * @param canonical Where the canonical form is written
+	 * @return The keywords included in the member (see {@link CanonicalNode#keywords})
+	 */
+	private int appendCanonical(JsonNode value, StringBuilder canonical) {
+		if(!value.isContainerNode()) {
+			canonical.append(value.toString());
+			return 0;
+		}
+		CanonicalNode member = canonicalNodes.get(value);
+		canonical.append('#').append(member.digest);
+		return member.keywords;
+	}
+
+	/**
+	 * Returns the type already created for a sub-schema (see {@link #structuralTypes}). If it is a class, it is also 
+	 * indexed with the pointer of the sub-schema.
+	 * 
+	 * @param key The key of the sub-schema (it may be null)
+	 * @param pointer The JSON Pointer of the sub-schema (null if it is not indexed)
+	 * @return The type (null if nothing)
+	 */
+	private Type reuseStructuralType(String key, JSONPointer pointer) {
+		StructuralType found = (key == null) ? null : structuralTypes.get(key);
+		if(found == null)
+			return null;
+		if(pointer != null && found.type instanceof Class)
+			indexConcept((Class) found.type, pointer);
+		return found.type;
+	}
+
+	/**
+	 * Registers the type created for a sub-schema (see {@link #structuralTypes})
+	 * 
+	 * @param key The key of the sub-schema (if null, nothing is registered)
+	 * @param type The type created
+	 * @param start The number of elements of the current package before analyzing the sub-schema
+	 */
+	private void addStructuralType(String key, Type type, int start) {
+		if(key == null)
+			return;
+		StructuralType structuralType = new StructuralType();
+		structuralType.type = type;
+		structuralType.elements = new ArrayList<>(umlPackage.getPackagedElements().subList(start, umlPackage.getPackagedElements().size()));
+		structuralTypes.put(key, structuralType);
+	}
+
+	/**
+	 * Returns the name of the type of an element. According to section 6.1.1 in json-schema-validation,
+	 * type can be either a string or an array. If it is array, we only consider the first element.
+	 * 
+	 * @param typeNode The JSON element of the type key
+	 * @return The name of the type (null if it cannot be found)
 	 */
-	private void addConstraint(Class concept, String constraintName, String constraintType, String constraintExp) {
-		Constraint constraint = UMLFactory.eINSTANCE.createConstraint();
-		String constraintId= concept.getName()+"-"+constraintName+"-"+constraintType;
-		constraint.setName(constraintId);
-		OpaqueExpression expression = UMLFactory.eINSTANCE.createOpaqueExpression();
-		expression.getLanguages().add("OCL");
-		expression.getBodies().add(constraintExp);
-		constraint.setSpecification(expression);
-		concept.getOwnedRules().add(constraint);
+	private String getTypeName(JsonNode typeNode) {
+		if(typeNode.isArray()) {
+			return typeNode.size() > 0 ? typeNode.get(0).asText() : null;
+		}
+		return typeNode.asText();
 	}
 
 	/**
@@ -701,26 +2696,114 @@ public class JSONSchemaToUML {
 	}
 
 	/**
-	 * Resolve the associations of the classes. The analysis process includes proxies to be resolved
-	 * afterwards. They are resolved by this method :)
+	 * Finds the class a reference points to. The reference is looked up in the {@link #referenceIndex} and,
+	 * if it is not there (e.g., it points to a schema which has not been analyzed), in the {@link #oracle} by name
+	 * @param ref The reference (as written in the schema)
+	 * @param target The canonical URI of the reference
+	 * @return The found class ({@link #unknown} if nothing)
 	 */
-	private void resolveAssociations() {
-		for(JSONSchemaURI refClassURI : associationsFound.keySet()) {
-			ProxyAssociation proxy = associationsFound.get(refClassURI);
-			Class owner = proxy.owner;
-			Class foundClass = null;
+	private Class findClass(JSONSchemaURI ref, String target) {
+		Class foundClass = referenceIndex.get(CanonicalURI.of(target));
+		if(foundClass == null) {
+			foundClass = queryOracle(referencedName(ref));
+		}
+		if(foundClass == null) {
+			foundClass = unknown;
+			if(metrics != null)
+				metrics.unresolved(target);
+		}
+		return foundClass;
+	}
 
-			if(refClassURI.getFragment() != null) {
-				foundClass = queryOracle(refClassURI.digestFragmentName());
+	/**
+	 * Returns the name of the class a reference points to, used to look it up by name in the {@link #oracle}
+	 * @param ref The reference (as written in the schema)
+	 * @return The name
+	 */
+	private String referencedName(JSONSchemaURI ref) {
+		return (ref.getFragment() != null) ? ref.digestFragmentName() : ref.digestName();
+	}
+
+	/**
+	 * Materializes the pending definitions reached by the references found (see {@link #setLazyDefinitions(boolean)}).
+	 * The references found in the definitions materialized are followed too, until every reference is visited.
+	 * Definitions are looked up as classes are by {@link #findClass(JSONSchemaURI, String)}.
+	 */
+	private void materializeDefinitions() {
+		if(pendingDefinitions.isEmpty())
+			return;
+		long start = startTimer();
+		// The lists grow as definitions are materialized
+		for(int i = 0, j = 0; i < associationsFound.size() || j < superclassesFound.size(); ) {
+			if(i < associationsFound.size()) {
+				ProxyAssociation proxy = associationsFound.get(i++);
+				materializeDefinition(proxy.ref, proxy.target);
 			} else {
-				foundClass = queryOracle(refClassURI.digestName());
-			}
-			
-			if(foundClass == null) {
-				foundClass = unknown;
+				ProxySuperclass proxy = superclassesFound.get(j++);
+				materializeDefinition(proxy.ref, proxy.target);
 			}
-			owner.createAssociation(proxy.sourceComposition, proxy.sourceKind, proxy.sourceEnd, proxy.sourceLower, proxy.sourceUpper, foundClass, proxy.targetComposition, proxy.targetKind, proxy.targetEnd, proxy.targetLower, proxy.targetUpper);
 		}
+		pendingDefinitions.clear();
+		pendingIndex.clear();
+		pendingNames.clear();
+		stopTimer(Phase.ANALYZE, start);
+	}
+
+	/**
+	 * Materializes the pending definition a reference points to (if any)
+	 * @param ref The reference (as written in the schema)
+	 * @param target The canonical URI of the reference
+	 */
+	private void materializeDefinition(JSONSchemaURI ref, String target) {
+		if(referenceIndex.containsKey(CanonicalURI.of(target)))
+			return;
+		PendingDefinition pending = pendingIndex.get(target);
+		if(pending == null) {
+			String name = referencedName(ref);
+			if(oracle.containsKey(name))
+				return;
+			pending = pendingNames.get(name);
+		}
+		if(pending == null || pending.materialized)
+			return;
+		pending.materialized = true;
+		Package outerPackage = umlPackage;
+		String outerBaseURI = baseURI, outerDocumentURI = documentURI;
+		umlPackage = pending.umlPackage;
+		baseURI = pending.baseURI; documentURI = pending.documentURI;
+		int start = umlPackage.getPackagedElements().size();
+		PendingDefinition materialized = pending;
+		traverse(() -> analyzeRootSchemaElement(materialized.name, materialized.definition, materialized.pointer));
+		if(metrics != null)
+			metrics.count(umlPackage.getPackagedElements().subList(start, umlPackage.getPackagedElements().size()));
+		umlPackage = outerPackage;
+		baseURI = outerBaseURI; documentURI = outerDocumentURI;
+	}
+
+	/**
+	 * Resolve the associations of the classes. The analysis process includes proxies to be resolved
+	 * afterwards. They are resolved by this method :)
+	 */
+	private void resolveAssociations() {
+		for(ProxyAssociation proxy : associationsFound) {
+			resolve(proxy);
+		}
+		if(metrics != null)
+			metrics.increment(Counter.ASSOCIATIONS, associationsFound.size());
+	}
+
+	/**
+	 * Resolves a proxy association, creating the association
+	 * @param proxy The proxy association
+	 * @return The association
+	 */
+	private Association resolve(ProxyAssociation proxy) {
+		Class owner = proxy.owner;
+		Class foundClass = findClass(proxy.ref, proxy.target);
+		Association association = elementFactory.createAssociation(owner, proxy.sourceComposition, proxy.sourceKind, proxy.sourceEnd, proxy.sourceLower, proxy.sourceUpper, foundClass, proxy.targetComposition, proxy.targetKind, proxy.targetEnd, proxy.targetLower, proxy.targetUpper);
+		if(isPatchable())
+			resolvedAssociations.put(proxy, association);
+		return association;
 	}
 
 	/**
@@ -728,71 +2811,266 @@ public class JSONSchemaToUML {
 	 * They are resolved by this method :)
 	 */
 	private void resolveSuperclasses() {
-		for(JSONSchemaURI refClassURI : superclassesFound.keySet()) {
-			Class subClass = superclassesFound.get(refClassURI);
-			Class foundClass = null;
-			if(refClassURI.getFragment() != null) {
-				foundClass = queryOracle(refClassURI.digestFragmentName());
-			} else {
-				foundClass = queryOracle(refClassURI.digestName());
-			}
-			if(foundClass == null) 
-				foundClass = unknown;
-			subClass.getSuperClasses().add(foundClass);
+		for(ProxySuperclass proxy : superclassesFound) {
+			resolve(proxy);
 		}
 	}
 
+	/**
+	 * Resolves a proxy superclass, adding the superclass to the subclass
+	 * @param proxy The proxy superclass
+	 */
+	private void resolve(ProxySuperclass proxy) {
+		Class foundClass = findClass(proxy.ref, proxy.target);
+		proxy.subclass.getSuperClasses().add(foundClass);
+		if(isPatchable())
+			resolvedSuperclasses.put(proxy, proxy.subclass.getGeneralization(foundClass));
+	}
+
 	/**
 	 * Definition are usually created to be reused among the different JSON schemas.
 	 * @param object The JSON object including the definitions
+	 * @param pointer The JSON Pointer of the object
+	 */
+	private void analyzeDefinitions(JsonNode object, JSONPointer pointer) {
+		JsonNode definitionsObj = object.get("definitions");
+		for(Iterator<Entry<String, JsonNode>> it = definitionsObj.fields(); it.hasNext(); ) {
+			Entry<String, JsonNode> entry = it.next();
+			JSONPointer definitionPointer = pointer.append("/definitions/" + escape(entry.getKey()));
+			schedule(() -> {
+				if(lazyDefinitions && !hasId(entry.getValue()))
+					addPendingDefinition(entry.getKey(), entry.getValue(), definitionPointer);
+				else
+					analyzeRootSchemaElement(entry.getKey(), entry.getValue(), definitionPointer);
+			});
+		}
+	}
+
+	/**
+	 * Indexes a definition to be materialized if it is referenced (see {@link #setLazyDefinitions(boolean)}). It is
+	 * indexed as its class would be by {@link #indexConcept(Class, JSONPointer)}
+	 * @param name The name of the definition
+	 * @param definition The definition
+	 * @param pointer The JSON Pointer of the definition in the current scope
+	 */
+	private void addPendingDefinition(String name, JsonNode definition, JSONPointer pointer) {
+		PendingDefinition pending = new PendingDefinition();
+		pending.name = name;
+		pending.definition = definition;
+		pending.pointer = pointer;
+		pending.baseURI = baseURI;
+		pending.documentURI = documentURI;
+		pending.umlPackage = umlPackage;
+		pendingDefinitions.add(pending);
+		pendingIndex.put(baseURI + "#" + pointer, pending);
+		if(documentURI != null && !documentURI.equals(baseURI))
+			pendingIndex.put(documentURI + "#" + pointer, pending);
+		pendingNames.put(name, pending);
+	}
+
+	/**
+	 * Checks if a JSON element or any of its children has an id
+	 * @param node The JSON element
+	 * @return True if an id is found
 	 */
-	private void analyzeDefinitions(JsonObject object) {
-		JsonObject definitionsObj = object.get("definitions").getAsJsonObject();
-		for(Entry<String, JsonElement> entry : definitionsObj.entrySet()) {
-			String definitionKey = entry.getKey();
-			JsonObject definitionObj = definitionsObj.get(definitionKey).getAsJsonObject();
-			analyzeRootSchemaElement(definitionKey, definitionObj);
+	private boolean hasId(JsonNode node) {
+		ArrayDeque<JsonNode> pending = new ArrayDeque<>();
+		pending.push(node);
+		while(!pending.isEmpty()) {
+			JsonNode element = pending.pop();
+			if(element.isObject() && getId(element) != null)
+				return true;
+			for(JsonNode child : element)
+				pending.push(child);
 		}
+		return false;
 	}
 
 	/**
 	 * Saves the model. It uses the resource set configured previously, as it includes some options to properly
 	 * resolve pathmaps and so on.
+	 * 
+	 * @throws JSONSchemaToUMLException If the model cannot be saved
 	 */
 	public void saveModel(File target) {
-		Resource resource = resourceSet.createResource(URI.createFileURI(target.getAbsolutePath())); // TODO Configure the name
-		resource.getContents().add(model);
-		try {
-			resource.save(null);
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
+		saveModel(target, ModelFormat.XMI);
+	}
+
+	/**
+	 * Saves the model in a given format
+	 * 
+	 * @param target The target file
+	 * @param format The format of the file
+	 * @throws JSONSchemaToUMLException If the model cannot be saved
+	 */
+	public void saveModel(File target, ModelFormat format) {
+		saveModel(URI.createFileURI(target.getAbsolutePath()), format); // TODO Configure the name
 	}
 
 	/**
 	 * Saves the model given an URI
 	 * 
 	 * @param target the target URI
+	 * @throws JSONSchemaToUMLException If the model cannot be saved
 	 */
 	public void saveModel(URI target) {
-		Resource resource = resourceSet.createResource(target);
+		saveModel(target, ModelFormat.XMI);
+	}
+
+	/**
+	 * Saves the model given an URI in a given format
+	 * 
+	 * @param target The target URI
+	 * @param format The format of the resource
+	 * @throws JSONSchemaToUMLException If the model cannot be saved
+	 */
+	public void saveModel(URI target, ModelFormat format) {
+		long start = startTimer();
+		Resource resource = createResource(target, format);
+		resource.getContents().add(model);
+		assignIdentifiers(resource);
+		save(resource, format);
+		stopTimer(Phase.SAVE, start);
+	}
+
+	/**
+	 * Saves the model splitting it into one resource per folder. The package created for each folder traversed
+	 * is saved in its own resource, and the resource of its parent (or the one of the model) only refers to it
+	 * (i.e., cross-resource containment proxies), as do the elements of other resources referring to its elements. 
+	 * This way, tools can load the model and only the packages they need, which are loaded on demand.
+	 * 
+	 * The resources of the packages are saved in a folder next to the target, named after it without
+	 * extension, and follow the structure of the folders traversed (e.g., model/folder/subfolder.uml).
+	 * Packages are saved as they are completed, i.e., the inner ones before the outer ones, and the model at the end.
+	 * 
+	 * @param target The target file of the model
+	 * @param format The format of the resources
+	 * @throws JSONSchemaToUMLException If the model cannot be saved
+	 */
+	public void saveModelByPackage(File target, ModelFormat format) {
+		long start = startTimer();
+		String name = target.getName();
+		String extension = (name.indexOf('.') > 0) ? name.substring(name.indexOf('.')) : "";
+		File packagesFolder = new File(target.getAbsoluteFile().getParentFile(), name.substring(0, name.length() - extension.length()));
+
+		Resource resource = createResource(URI.createFileURI(target.getAbsolutePath()), format);
 		resource.getContents().add(model);
+		// Every resource is created (and its identifiers assigned) before saving any of them, as they refer to each other
+		List<Resource> packageResources = new ArrayList<>();
+		for(Package folderPackage : folderPackages) {
+			StringBuilder path = new StringBuilder(folderPackage.getName());
+			for(Package parent = folderPackage.getNestingPackage(); folderPackages.contains(parent); parent = parent.getNestingPackage())
+				path.insert(0, parent.getName() + File.separator);
+			Resource packageResource = createResource(URI.createFileURI(new File(packagesFolder, path + extension).getAbsolutePath()), format);
+			packageResource.getContents().add(folderPackage);
+			packageResources.add(packageResource);
+		}
+		assignIdentifiers(resource);
+		for(Resource packageResource : packageResources)
+			assignIdentifiers(packageResource);
+
+		try {
+			for(int i = packageResources.size() - 1; i >= 0; i--)
+				save(packageResources.get(i), format);
+			save(resource, format);
+		} finally {
+			// The packages are contained again only by the model, so it can be saved again as a whole
+			for(Resource packageResource : packageResources) {
+				packageResource.getContents().clear();
+				resourceSet.getResources().remove(packageResource);
+			}
+		}
+		stopTimer(Phase.SAVE, start);
+	}
+
+	/**
+	 * Creates a resource in the resource set for a given format. Resources are created directly 
+	 * (and not from the extension of the URI, e.g., model.uml.gz)
+	 * 
+	 * @param target The URI of the resource
+	 * @param format The format of the resource
+	 * @return The resource
+	 */
+	private Resource createResource(URI target, ModelFormat format) {
+		Resource resource;
+		if(format == ModelFormat.BINARY) {
+			resource = new BinaryResourceImpl(target);
+		} else {
+			resource = UMLResource.Factory.INSTANCE.createResource(target);
+		}
+		resourceSet.getResources().add(resource);
+		return resource;
+	}
+
+	/**
+	 * Saves a resource in a given format
+	 * 
+	 * @param resource The resource to save
+	 * @param format The format of the resource
+	 * @throws JSONSchemaToUMLException If the resource cannot be saved
+	 */
+	private void save(Resource resource, ModelFormat format) {
+		Map<Object, Object> options = new HashMap<>();
+		if(format != ModelFormat.BINARY) {
+			if(lookupTable == null)
+				lookupTable = new ArrayList<>();
+			// These options do not change the XMI, they only speed up the serialization
+			options.put(XMLResource.OPTION_USE_CACHED_LOOKUP_TABLE, lookupTable);
+			options.put(XMLResource.OPTION_CONFIGURATION_CACHE, Boolean.TRUE);
+			options.put(XMLResource.OPTION_FLUSH_THRESHOLD, SAVE_BUFFER_SIZE);
+		}
+		if(format == ModelFormat.XMI_ZIP)
+			options.put(Resource.OPTION_ZIP, Boolean.TRUE);
 		try {
-			resource.save(null);
+			if(format == ModelFormat.XMI_GZIP) {
+				OutputStream output = resourceSet.getURIConverter().createOutputStream(resource.getURI());
+				try (OutputStream gzipOutput = new GZIPOutputStream(new BufferedOutputStream(output, SAVE_BUFFER_SIZE), SAVE_BUFFER_SIZE)) {
+					resource.save(gzipOutput, options);
+				}
+			} else {
+				resource.save(options);
+			}
 		} catch (IOException e) {
-			e.printStackTrace();
+			throw new JSONSchemaToUMLException("The model could not be saved in " + resource.getURI(), e);
+		}
+	}
+
+	/**
+	 * Gives each element of the resource an identifier computed from its position in the model. UML resources
+	 * use random UUIDs by default, this way saving the same model always produces the same file.
+	 * 
+	 * @param resource The resource to be saved
+	 */
+	private void assignIdentifiers(Resource resource) {
+		if(!(resource instanceof XMLResource))
+			return;
+		XMLResource xmlResource = (XMLResource) resource;
+		int counter = 0;
+		for(TreeIterator<EObject> it = resource.getAllContents(); it.hasNext(); ) {
+			EObject element = it.next();
+			if(element.eResource() != resource) {
+				// Stored in its own resource (see saveModelByPackage)
+				it.prune();
+			} else {
+				xmlResource.setID(element, "_" + counter++);
+			}
 		}
 	}
 
 	/**
 	 * Returns (or create) the UML primitive type for a given string-based name.
-	 * Primitive types are created on demand.
+	 * Primitive types are created on demand, unless the ones of the library are used (see {@link #setSharedPrimitiveTypes(boolean)}).
 	 * 
 	 * @param commonName The string-based name of the type
 	 * @param model The model element
 	 * @return The primitive type
 	 */
 	private PrimitiveType getPrimitiveType(String typeName) {
+		if(sharedPrimitiveTypes) {
+			PrimitiveType shared = PrimitiveTypeLibrary.get(typeName);
+			if(shared != null)
+				return shared;
+		}
 		PrimitiveType found = primitiveTypes.get(typeName);
 		if(found == null) {
 			found = umlFactory.createPrimitiveType();
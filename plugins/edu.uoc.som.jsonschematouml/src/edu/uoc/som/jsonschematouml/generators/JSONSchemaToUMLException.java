@@ -10,4 +10,8 @@ public class JSONSchemaToUMLException extends RuntimeException {
 	public JSONSchemaToUMLException(String msg) {
 		super(msg);
 	}
+
+	public JSONSchemaToUMLException(String msg, Throwable cause) {
+		super(msg, cause);
+	}
 }
@@ -1,5 +1,7 @@
 package edu.uoc.som.jsonschematouml.generators;
 
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * Utility class to deal with URIs in JSON Schemas. The class includes some helper
  * methods to ease the resolution and comparison of URIs.
@@ -9,98 +11,143 @@ package edu.uoc.som.jsonschematouml.generators;
  * 
  */
 public class JSONSchemaURI {
+	/**
+	 * The maximum number of instances kept by {@link #of(String)}. The cache is emptied when it is reached
+	 */
+	private static final int MAX_CACHED_URIS = 65536;
+
+	/**
+	 * The instances shared by {@link #of(String)}, keyed by their URI string
+	 */
+	private static final ConcurrentHashMap<String, JSONSchemaURI> CACHE = new ConcurrentHashMap<>();
+
 	/**
 	 * Holds the full URI string
 	 */
 	private String URIString;
 	/**
-	 * The scheme of the URI (cf. Section 3.1 - RFC 3986) 
+	 * Offsets of the components in the URI string (cf. Appendix B - RFC 3986). The end of the scheme 
+	 * (i.e., the ':'), the start/end of the authority, the end of the path and the start of the query and 
+	 * fragment (i.e., the '?' and '#'). Undefined components have -1 as offset. The path is always defined.
+	 */
+	private int schemeEnd = -1, authorityStart = -1, pathStart, pathEnd, queryStart = -1, fragmentStart = -1;
+	/**
+	 * The scheme of the URI (cf. Section 3.1 - RFC 3986). Created on demand from the offsets
 	 */
 	private String scheme;
 	/**
-	 * The authority of the URI (cf. Section 3.2 - RFC 3986) 
+	 * The authority of the URI (cf. Section 3.2 - RFC 3986). Created on demand from the offsets
 	 */
 	private String authority;
 	/**
-	 * The path of the URI (cf. Section 3.3 - RFC 3986) 
+	 * The path of the URI (cf. Section 3.3 - RFC 3986). Created on demand from the offsets
 	 */
 	private String path;
 	/**
-	 * The query of the URI (cf. Section 3.4 - RFC 3986) 
+	 * The query of the URI (cf. Section 3.4 - RFC 3986). Created on demand from the offsets
 	 */
 	private String query;
 	/**
-	 * The fragment of the URI (cf. Section 3.5 - RFC 3986) 
+	 * The fragment of the URI (cf. Section 3.5 - RFC 3986). Created on demand from the offsets
 	 */
 	private String fragment;
+	/**
+	 * The names digested (computed the first time they are requested)
+	 */
+	private String name, idName, fragmentName;
 	
 	
 	public JSONSchemaURI(String URIString) {
 		this.URIString = URIString;
 		parseURIString();
 	}
+
+	/**
+	 * Returns the instance for a URI string. Instances are immutable, so the same instance is shared
+	 * for equal strings (which also shares the names digested)
+	 * 
+	 * @param URIString The URI string
+	 * @return The instance
+	 */
+	public static JSONSchemaURI of(String URIString) {
+		JSONSchemaURI jsu = CACHE.get(URIString);
+		if(jsu == null) {
+			if(CACHE.size() >= MAX_CACHED_URIS)
+				CACHE.clear();
+			jsu = new JSONSchemaURI(URIString);
+			JSONSchemaURI previous = CACHE.putIfAbsent(URIString, jsu);
+			if(previous != null)
+				jsu = previous;
+		}
+		return jsu;
+	}
 	
 	/**
-	 * Parses the URIString to obtain the main element of the URI
+	 * Parses the URIString to obtain the offsets of the main elements of the URI. The string is 
+	 * traversed only once
 	 */
 	private void parseURIString() {
-		/* Extracting the scheme */
-		int index = this.URIString.indexOf(":");
-		int startIndex = 0;
-		int endIndex = 0;
-		if(index >= 0) {
-			// The URI contains a scheme and therefore an authority
-			this.scheme = this.URIString.substring(0, index);
-		
-			/* Extracting the authority */
-			startIndex = this.URIString.indexOf("//");
-			endIndex = 0;
-			if(startIndex >= 0) {
-				endIndex = this.URIString.substring(startIndex+2).indexOf("/"); 
-				this.authority = this.URIString.substring(startIndex+2, startIndex+2+endIndex);
-			}
-			
-			/* Extracting the path */
-			startIndex = startIndex+2+endIndex;
-			endIndex = this.URIString.lastIndexOf("/");
-			endIndex = this.URIString.indexOf("?");
-			if(endIndex < 0 && this.URIString.indexOf("#") < 0) {
-				/* No query or fragment part */
-				this.path = this.URIString.substring(startIndex, this.URIString.length());
-				return;
-			} else if(endIndex < 0 && this.URIString.indexOf("#") > 0) {
-				/* No query part but fragment included */
-				endIndex = this.URIString.indexOf("#");
-			}
-			this.path = this.URIString.substring(startIndex, endIndex);
+		String uri = this.URIString;
+		int length = uri.length();
+		int index = 0;
+
+		/* Extracting the scheme (it ends with the first ':', if it comes before any '/', '?' or '#') */
+		int end = 0;
+		char c = 0;
+		while(end < length && (c = uri.charAt(end)) != ':' && c != '/' && c != '?' && c != '#') 
+			end++;
+		if(end > 0 && end < length && c == ':') {
+			this.schemeEnd = end;
+			index = end + 1;
 		}
-			
+
+		/* Extracting the authority */
+		if(index + 1 < length && uri.charAt(index) == '/' && uri.charAt(index + 1) == '/') {
+			this.authorityStart = index + 2;
+			index += 2;
+			while(index < length && (c = uri.charAt(index)) != '/' && c != '?' && c != '#') 
+				index++;
+		}
+
+		/* Extracting the path */
+		this.pathStart = index;
+		while(index < length && (c = uri.charAt(index)) != '?' && c != '#') 
+			index++;
+		this.pathEnd = index;
+
 		/* Extracting the query and fragment (if any) */
-		startIndex = endIndex;
-		endIndex = this.URIString.indexOf("#");
-		if(endIndex < 0) {
-			/* Only query part */
-			this.query = this.URIString.substring(startIndex+1, this.URIString.length());
-			return;
-		} else if (this.URIString.indexOf("?") < 0) {
-			/* Only fragment part */
-			this.fragment = this.URIString.substring(endIndex+1, this.URIString.length());
-		} else {
-			/* Both query and fragment */
-			this.query = this.URIString.substring(startIndex+1, endIndex);
-			this.fragment = this.URIString.substring(endIndex+1, this.URIString.length());
+		if(index < length && uri.charAt(index) == '?') {
+			this.queryStart = index + 1;
+			while(index < length && uri.charAt(index) != '#') 
+				index++;
 		}
+		if(index < length)
+			this.fragmentStart = index + 1;
 	}
 	
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
-		sb.append("Scheme    : " + this.scheme + "\n");
-		sb.append("Authority : " + this.authority + "\n");
-		sb.append("Path      : " + this.path + "\n");
-		sb.append("Query     : " + this.query + "\n");
-		sb.append("Fragment  : " + this.fragment + "\n");
+		sb.append("Scheme    : " + this.getScheme() + "\n");
+		sb.append("Authority : " + this.getAuthority() + "\n");
+		sb.append("Path      : " + this.getPath() + "\n");
+		sb.append("Query     : " + this.getQuery() + "\n");
+		sb.append("Fragment  : " + this.getFragment() + "\n");
 		return sb.toString();
 	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if(this == obj)
+			return true;
+		if(!(obj instanceof JSONSchemaURI))
+			return false;
+		return this.URIString.equals(((JSONSchemaURI) obj).URIString);
+	}
+
+	@Override
+	public int hashCode() {
+		return this.URIString.hashCode();
+	}
 	
 	/**
 	 * Digest the name of an object given an URI. It uses the last element of the path
@@ -115,13 +162,17 @@ public class JSONSchemaURI {
 	 * @return String with the name digested
 	 */
 	public String digestName() {
-		String[] splitPath = this.path.split("/");
-		String lastPathElement = splitPath[splitPath.length-1];
-		int index = lastPathElement.lastIndexOf(".");
-		if(index > 0) {
-			return lastPathElement.substring(0, index);
+		if(this.name == null) {
+			String path = this.getPath();
+			int end = trimmedEnd(path);
+			String lastPathElement = path.substring(path.lastIndexOf('/', end - 1) + 1, end);
+			int index = lastPathElement.lastIndexOf(".");
+			if(index > 0) {
+				lastPathElement = lastPathElement.substring(0, index);
+			}
+			this.name = lastPathElement;
 		}
-		return lastPathElement;
+		return this.name;
 	}
 	
 	/**
@@ -137,12 +188,18 @@ public class JSONSchemaURI {
 	 * @return String with the name digested
 	 */
 	public String digestIdName() {
-		String[] splitPath = this.path.split("/");
-		if(splitPath.length > 2) {
-			return splitPath[splitPath.length-2]; 
-		} else {
-			return splitPath[splitPath.length-1]; 
+		if(this.idName == null) {
+			String path = this.getPath();
+			int end = trimmedEnd(path);
+			int last = path.lastIndexOf('/', end - 1);
+			int previous = (last > 0) ? path.lastIndexOf('/', last - 1) : -1;
+			if(previous >= 0) {
+				this.idName = path.substring(previous + 1, last);
+			} else {
+				this.idName = path.substring(last + 1, end);
+			}
 		}
+		return this.idName;
 	}
 	
 	/**
@@ -164,40 +221,158 @@ public class JSONSchemaURI {
 	 * @return
 	 */
 	public String digestFragmentName() {
-		if(this.fragment == null) {
+		if(this.fragmentStart < 0) {
 			return this.digestIdName();
 		} else {
-			String[] splitFragment = this.fragment.split("/");
-			return splitFragment[splitFragment.length-1];
+			if(this.fragmentName == null) {
+				String fragment = this.getFragment();
+				int end = trimmedEnd(fragment);
+				this.fragmentName = fragment.substring(fragment.lastIndexOf('/', end - 1) + 1, end);
+			}
+			return this.fragmentName;
 		}
 	}
 
+	/**
+	 * Returns the end of a path ignoring its trailing '/' (i.e., the empty trailing elements)
+	 */
+	private static int trimmedEnd(String path) {
+		int end = path.length();
+		while(end > 0 && path.charAt(end - 1) == '/')
+			end--;
+		return end;
+	}
+
+	/**
+	 * Resolves a URI reference against a base URI, following Section 5.2 of RFC 3986 (including the removal
+	 * of dot segments). The base URI is expected to be absolute.
+	 * <br>
+	 * For instance:
+	 *   resolve("http://example.com/schemas/a.json", "b.json#/definitions/c")
+	 * <br>
+	 * returns:
+	 *   http://example.com/schemas/b.json#/definitions/c
+	 * 
+	 * @param base The base URI
+	 * @param reference The URI reference to resolve
+	 * @return The target URI
+	 */
+	public static String resolve(String base, String reference) {
+		JSONSchemaURI b = of(base);
+		JSONSchemaURI r = new JSONSchemaURI(reference);
+		String scheme, authority, path, query;
+		if(r.getScheme() != null) {
+			scheme = r.getScheme();
+			authority = r.getAuthority();
+			path = removeDotSegments(r.getPath());
+			query = r.getQuery();
+		} else {
+			if(r.getAuthority() != null) {
+				authority = r.getAuthority();
+				path = removeDotSegments(r.getPath());
+				query = r.getQuery();
+			} else {
+				if(r.getPath().isEmpty()) {
+					path = b.getPath();
+					query = (r.getQuery() != null) ? r.getQuery() : b.getQuery();
+				} else {
+					if(r.getPath().startsWith("/")) {
+						path = removeDotSegments(r.getPath());
+					} else {
+						// Merging the paths (cf. Section 5.2.3 - RFC 3986)
+						if(b.getAuthority() != null && b.getPath().isEmpty())
+							path = removeDotSegments("/" + r.getPath());
+						else
+							path = removeDotSegments(b.getPath().substring(0, b.getPath().lastIndexOf('/') + 1) + r.getPath());
+					}
+					query = r.getQuery();
+				}
+				authority = b.getAuthority();
+			}
+			scheme = b.getScheme();
+		}
+
+		StringBuilder sb = new StringBuilder();
+		if(scheme != null)
+			sb.append(scheme).append(':');
+		if(authority != null)
+			sb.append("//").append(authority);
+		sb.append(path);
+		if(query != null)
+			sb.append('?').append(query);
+		if(r.getFragment() != null)
+			sb.append('#').append(r.getFragment());
+		return sb.toString();
+	}
+
+	/**
+	 * Removes the "." and ".." segments of a path (cf. Section 5.2.4 - RFC 3986)
+	 */
+	private static String removeDotSegments(String path) {
+		if(path.indexOf('.') < 0)
+			return path;
+		String input = path;
+		StringBuilder output = new StringBuilder();
+		while(!input.isEmpty()) {
+			if(input.startsWith("../")) {
+				input = input.substring(3);
+			} else if(input.startsWith("./")) {
+				input = input.substring(2);
+			} else if(input.startsWith("/./")) {
+				input = input.substring(2);
+			} else if(input.equals("/.")) {
+				input = "/";
+			} else if(input.startsWith("/../")) {
+				input = input.substring(3);
+				output.setLength(Math.max(output.lastIndexOf("/"), 0));
+			} else if(input.equals("/..")) {
+				input = "/";
+				output.setLength(Math.max(output.lastIndexOf("/"), 0));
+			} else if(input.equals(".") || input.equals("..")) {
+				input = "";
+			} else {
+				int next = input.indexOf('/', 1);
+				if(next < 0)
+					next = input.length();
+				output.append(input, 0, next);
+				input = input.substring(next);
+			}
+		}
+		return output.toString();
+	}
+
 	/* Generated */
 	public String getURIString() {
 		return URIString;
 	}
 
 	public String getScheme() {
+		if(scheme == null && schemeEnd >= 0)
+			scheme = URIString.substring(0, schemeEnd);
 		return scheme;
 	}
 
 	public String getAuthority() {
+		if(authority == null && authorityStart >= 0)
+			authority = URIString.substring(authorityStart, pathStart);
 		return authority;
 	}
 
 	public String getPath() {
+		if(path == null)
+			path = URIString.substring(pathStart, pathEnd);
 		return path;
 	}
 
 	public String getQuery() {
+		if(query == null && queryStart >= 0)
+			query = URIString.substring(queryStart, (fragmentStart >= 0) ? fragmentStart - 1 : URIString.length());
 		return query;
 	}
 
 	public String getFragment() {
+		if(fragment == null && fragmentStart >= 0)
+			fragment = URIString.substring(fragmentStart);
 		return fragment;
 	}
-	
-	
-	
-	
 }
@@ -0,0 +1,205 @@
+package edu.uoc.som.jsonschematouml.generators;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Watches the files/folders transformed by {@link JSONSchemaToUML} and keeps their models up to date. When a file changes,
+ * only that file is analyzed again and its elements are patched in the model (see {@link JSONSchemaToUML#update(File)}),
+ * which is then saved again.
+ *
+ * The changes are detected with a {@link WatchService}, and they are applied by the thread calling {@link #poll(long, TimeUnit)}.
+ * Changes notified close in time (e.g., an editor saving a file in several steps) are applied together.
+ */
+public class JSONSchemaWatcher implements Closeable {
+	/**
+	 * The default time (in milliseconds) waited for further changes once a change is notified
+	 */
+	public static final long QUIET_PERIOD = 100;
+
+	/**
+	 * This class is used to represent a file/folder watched
+	 *
+	 */
+	class WatchedInput {
+		/**
+		 * The file/folder transformed
+		 */
+		File input;
+		/**
+		 * The instance which transformed it
+		 */
+		JSONSchemaToUML generator;
+		/**
+		 * The file where the model is saved
+		 */
+		File target;
+		/**
+		 * The format of the model
+		 */
+		ModelFormat format;
+	}
+
+	/**
+	 * The watch service
+	 */
+	private final WatchService watchService;
+
+	/**
+	 * The folders registered, by their watch key
+	 */
+	private final HashMap<WatchKey, Path> folders = new HashMap<>();
+
+	/**
+	 * The files/folders watched
+	 */
+	private final List<WatchedInput> inputs = new ArrayList<>();
+
+	/**
+	 * The time (in milliseconds) waited for further changes once a change is notified (see {@link #setQuietPeriod(long)})
+	 */
+	private long quietPeriod = QUIET_PERIOD;
+
+	/**
+	 * Creates a watcher (of the default file system)
+	 *
+	 * @throws IOException If the watch service cannot be created
+	 */
+	public JSONSchemaWatcher() throws IOException {
+		watchService = FileSystems.getDefault().newWatchService();
+	}
+
+	/**
+	 * Sets the time waited for further changes once a change is notified, so the changes notified within it are
+	 * applied together. By default, {@link #QUIET_PERIOD}.
+	 *
+	 * @param quietPeriod The time in milliseconds
+	 */
+	public void setQuietPeriod(long quietPeriod) {
+		if(quietPeriod < 0)
+			throw new IllegalArgumentException("The quiet period cannot be negative");
+		this.quietPeriod = quietPeriod;
+	}
+
+	/**
+	 * Watches a file/folder already transformed. The instance should have the incremental updates enabled (see
+	 * {@link JSONSchemaToUML#setIncrementalUpdates(boolean)}), otherwise each change builds the whole model again.
+	 *
+	 * @param input The file/folder, as given to {@link JSONSchemaToUML#launch(File)}
+	 * @param generator The instance which transformed it
+	 * @param target The file where the model is saved when it is updated
+	 * @param format The format of the model
+	 * @throws IOException If the folders cannot be watched
+	 */
+	public void watch(File input, JSONSchemaToUML generator, File target, ModelFormat format) throws IOException {
+		WatchedInput watched = new WatchedInput();
+		watched.input = input.getAbsoluteFile();
+		watched.generator = generator;
+		watched.target = target;
+		watched.format = format;
+		inputs.add(watched);
+		register(watched.input.isDirectory() ? watched.input.toPath() : watched.input.getParentFile().toPath());
+	}
+
+	/**
+	 * Registers a folder (and its subfolders) in the watch service
+	 *
+	 * @param folder The folder
+	 * @throws IOException
+	 */
+	private void register(Path folder) throws IOException {
+		try (Stream<Path> paths = Files.walk(folder)) {
+			for(Path path : (Iterable<Path>) paths.filter(Files::isDirectory)::iterator)
+				folders.put(path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE), path);
+		}
+	}
+
+	/**
+	 * Waits for changes in the files/folders watched and applies them: the models are updated and saved again
+	 *
+	 * @param timeout How long to wait for a change
+	 * @param unit The unit of the timeout
+	 * @return The files/folders changed (empty if nothing changed before the timeout)
+	 * @throws InterruptedException If interrupted while waiting
+	 */
+	public List<File> poll(long timeout, TimeUnit unit) throws InterruptedException {
+		Set<File> changed = new LinkedHashSet<>();
+		boolean overflow = false;
+		for(WatchKey key = watchService.poll(timeout, unit); key != null; key = watchService.poll(quietPeriod, TimeUnit.MILLISECONDS)) {
+			Path folder = folders.get(key);
+			for(WatchEvent<?> event : key.pollEvents()) {
+				if(event.kind() == StandardWatchEventKinds.OVERFLOW) {
+					overflow = true;
+				} else if(folder != null) {
+					Path path = folder.resolve((Path) event.context());
+					// Changes inside subfolders are notified by their own keys
+					if(event.kind() == StandardWatchEventKinds.ENTRY_MODIFY && Files.isDirectory(path))
+						continue;
+					if(event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+						try {
+							register(path);
+						} catch (IOException e) {
+							System.err.println("The folder " + path + " could not be watched");
+						}
+					}
+					changed.add(path.toFile());
+				}
+			}
+			if(!key.reset())
+				folders.remove(key);
+		}
+
+		Set<WatchedInput> updated = new LinkedHashSet<>();
+		for(WatchedInput watched : inputs) {
+			if(overflow) {
+				// Changes were lost, the whole model is built again
+				watched.generator.update(watched.input);
+				updated.add(watched);
+				continue;
+			}
+			for(File file : changed) {
+				if(contains(watched.input, file)) {
+					watched.generator.update(file);
+					updated.add(watched);
+				}
+			}
+		}
+		for(WatchedInput watched : updated)
+			watched.generator.saveModel(watched.target, watched.format);
+		return new ArrayList<>(changed);
+	}
+
+	/**
+	 * Checks if a file belongs to a file/folder watched
+	 *
+	 * @param input The file/folder watched
+	 * @param file The file
+	 * @return True if it is the file watched or it is inside the folder watched
+	 */
+	private static boolean contains(File input, File file) {
+		return file.toPath().startsWith(input.toPath());
+	}
+
+	/**
+	 * Stops watching the files/folders
+	 */
+	@Override
+	public void close() throws IOException {
+		watchService.close();
+	}
+}
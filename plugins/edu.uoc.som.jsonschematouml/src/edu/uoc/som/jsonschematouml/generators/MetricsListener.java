@@ -0,0 +1,40 @@
+package edu.uoc.som.jsonschematouml.generators;
+
+import java.io.File;
+
+import edu.uoc.som.jsonschematouml.generators.TransformationMetrics.Phase;
+
+/**
+ * Listener of the metrics recorded during a transformation (see {@link TransformationMetrics#addListener(MetricsListener)}).
+ *
+ * Files may be analyzed in parallel, so the methods can be called concurrently from the threads of the
+ * executor of the transformation. Implementations should return quickly, as they are called in the hot path.
+ */
+public interface MetricsListener {
+	/**
+	 * Called each time a phase completes (for the phases run per file, once per file)
+	 *
+	 * @param phase The phase
+	 * @param nanos The time spent (in nanoseconds)
+	 */
+	default void phaseCompleted(Phase phase, long nanos) {
+	}
+
+	/**
+	 * Called each time a file is analyzed (or loaded from the cache)
+	 *
+	 * @param file The file
+	 * @param nanos The time spent (in nanoseconds)
+	 * @param valid False if the file was skipped (i.e., it is not a valid JSON Schema)
+	 */
+	default void fileAnalyzed(File file, long nanos, boolean valid) {
+	}
+
+	/**
+	 * Called at the end of each launch (see {@link JSONSchemaToUML#launch(File)}), once the references are resolved
+	 *
+	 * @param metrics The metrics (accumulated since they were created or reset)
+	 */
+	default void launchCompleted(TransformationMetrics metrics) {
+	}
+}
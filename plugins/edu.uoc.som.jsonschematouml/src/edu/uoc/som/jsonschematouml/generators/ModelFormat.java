@@ -0,0 +1,25 @@
+package edu.uoc.som.jsonschematouml.generators;
+
+/**
+ * The formats in which {@link JSONSchemaToUML} can save the generated models
+ * (see {@link JSONSchemaToUML#saveModel(java.io.File, ModelFormat)})
+ */
+public enum ModelFormat {
+	/**
+	 * XMI, the format used by the UML tools (e.g., model.uml). The default format
+	 */
+	XMI,
+	/**
+	 * XMI compressed with gzip (e.g., model.uml.gz). It has to be decompressed before opening it with UML tools
+	 */
+	XMI_GZIP,
+	/**
+	 * XMI stored in a zip archive. It can be loaded by EMF with the Resource.OPTION_ZIP load option
+	 */
+	XMI_ZIP,
+	/**
+	 * EMF binary resource. It is the fastest format to write and load, and it can be loaded with a 
+	 * BinaryResourceImpl (with the UML package registered)
+	 */
+	BINARY
+}
@@ -0,0 +1,92 @@
+package edu.uoc.som.jsonschematouml.generators;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.emf.common.EMFPlugin;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.uml2.common.util.CacheAdapter;
+import org.eclipse.uml2.uml.PrimitiveType;
+import org.eclipse.uml2.uml.resource.UMLResource;
+import org.eclipse.uml2.uml.resources.util.UMLResourcesUtil;
+
+/**
+ * The types of the UML primitive types library ({@link UMLResource#UML_PRIMITIVE_TYPES_LIBRARY_URI}) used by the
+ * models of {@link JSONSchemaToUML} (see {@link JSONSchemaToUML#setSharedPrimitiveTypes(boolean)}).
+ *
+ * The library is loaded once per JVM, in a resource set of its own, and it is read-only: the models of every instance
+ * refer to the same types. Outside Eclipse, the locations of the resources of UML2 are registered in that resource set (see
+ * {@link UMLResourcesUtil#initURIConverterURIMap(Map)}), so the library is loaded from the UML2 resources plugin as in Eclipse.
+ * If it cannot be loaded, a {@link JSONSchemaToUMLException} is thrown.
+ *
+ * UML2 records the inverse references of the elements in a cache adapter (see {@link CacheAdapter}), which is attached
+ * to the resource set of the library the first time a model refers to one of its types. When each thread has its own
+ * cache adapter, the one of the calling thread is attached in {@link #get(String)}, so the library is only modified
+ * by one thread at a time.
+ */
+final class PrimitiveTypeLibrary {
+	/**
+	 * The names of the types of the library (which are also their ids)
+	 */
+	private static final String[] NAMES = { "Boolean", "Integer", "Real", "String", "UnlimitedNatural" };
+
+	/**
+	 * The types of the library by name
+	 */
+	private static final Map<String, PrimitiveType> types = new HashMap<>();
+
+	/**
+	 * The resource set of the library, or null if it has not been loaded yet
+	 */
+	private static ResourceSet resourceSet;
+
+	private PrimitiveTypeLibrary() {
+	}
+
+	/**
+	 * Returns a type of the library, which is loaded the first time
+	 *
+	 * @param name The name of the type
+	 * @return The type, or null if the library does not include it (e.g., "Date")
+	 * @throws JSONSchemaToUMLException If the library cannot be loaded
+	 */
+	static synchronized PrimitiveType get(String name) {
+		if(resourceSet == null)
+			load();
+		CacheAdapter adapter = CacheAdapter.getInstance();
+		if(adapter != null && !resourceSet.eAdapters().contains(adapter))
+			resourceSet.eAdapters().add(adapter);
+		return types.get(name);
+	}
+
+	/**
+	 * Loads the library
+	 *
+	 * @throws JSONSchemaToUMLException If the library cannot be loaded or it does not include some type
+	 */
+	private static void load() {
+		ResourceSet library = new ResourceSetImpl();
+		if(!EMFPlugin.IS_ECLIPSE_RUNNING) {
+			library.getResourceFactoryRegistry().getExtensionToFactoryMap().put(UMLResource.FILE_EXTENSION, UMLResource.Factory.INSTANCE);
+			UMLResourcesUtil.initURIConverterURIMap(library.getURIConverter().getURIMap());
+		}
+		URI uri = URI.createURI(UMLResource.UML_PRIMITIVE_TYPES_LIBRARY_URI);
+		Resource resource;
+		try {
+			resource = library.getResource(uri, true);
+		} catch (RuntimeException e) {
+			throw new JSONSchemaToUMLException("The UML primitive types library could not be loaded from " + uri, e);
+		}
+		for(String name : NAMES) {
+			EObject type = resource.getEObject(name);
+			if(!(type instanceof PrimitiveType))
+				throw new JSONSchemaToUMLException("The UML primitive types library does not include " + name);
+			types.put(name, (PrimitiveType) type);
+		}
+		resourceSet = library;
+	}
+}
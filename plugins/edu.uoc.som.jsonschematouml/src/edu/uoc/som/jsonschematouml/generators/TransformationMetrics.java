@@ -0,0 +1,410 @@
+package edu.uoc.som.jsonschematouml.generators;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.uml2.uml.Association;
+import org.eclipse.uml2.uml.Class;
+import org.eclipse.uml2.uml.Enumeration;
+import org.eclipse.uml2.uml.PackageableElement;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.fge.jackson.JacksonUtils;
+
+/**
+ * Metrics of the transformations run by {@link JSONSchemaToUML} (see {@link JSONSchemaToUML#setMetrics(TransformationMetrics)}):
+ * the time spent in each phase, the number of elements created, the references which could not be resolved
+ * and the distribution of the time spent analyzing each file.
+ *
+ * Metrics are accumulated until {@link #reset()} is called, so the same instance can be shared by several
+ * transformations (e.g., the inputs of the command line). They can be followed while they are recorded with a
+ * {@link MetricsListener} and exported as a JSON report with {@link #writeReport(File)}.
+ *
+ * The methods of this class can be called concurrently.
+ */
+public class TransformationMetrics {
+	/**
+	 * The phases of a transformation. The time of the phases run per file (validation, parsing, analysis)
+	 * is the sum of the time spent in each file, so it may be longer than the launch if files are analyzed in parallel
+	 */
+	public enum Phase {
+		/**
+		 * Validation of the files against the JSON Schema specification
+		 */
+		VALIDATE,
+		/**
+		 * Reading and parsing of the files
+		 */
+		PARSE,
+		/**
+		 * Creation of the UML elements of the files
+		 */
+		ANALYZE,
+		/**
+		 * Merge of the elements of each file into the model
+		 */
+		MERGE,
+		/**
+		 * Resolution of the references used as associations
+		 */
+		RESOLVE_ASSOCIATIONS,
+		/**
+		 * Resolution of the references used as superclasses
+		 */
+		RESOLVE_SUPERCLASSES,
+		/**
+		 * Saving of the model
+		 */
+		SAVE
+	}
+
+	/**
+	 * The events counted during a transformation
+	 */
+	public enum Counter {
+		/**
+		 * Files analyzed (including the ones loaded from the cache and the ones skipped)
+		 */
+		FILES,
+		/**
+		 * Files skipped because they are not valid JSON Schemas
+		 */
+		INVALID_FILES,
+		/**
+		 * Files loaded from the cache of the incremental mode
+		 */
+		CACHED_FILES,
+		/**
+		 * Classes added to the model
+		 */
+		CLASSES,
+		/**
+		 * Enumerations added to the model
+		 */
+		ENUMERATIONS,
+		/**
+		 * Associations added to the model
+		 */
+		ASSOCIATIONS,
+		/**
+		 * OCL constraints added to the model
+		 */
+		CONSTRAINTS,
+		/**
+		 * References which could not be resolved (i.e., they point to the Unknown class)
+		 */
+		UNRESOLVED_REFERENCES
+	}
+
+	/**
+	 * The number of buckets of the histogram of the file latencies. The bucket i counts the files analyzed
+	 * in less than 2^i microseconds (and at least 2^(i-1)), the last one counts the rest
+	 */
+	private static final int LATENCY_BUCKETS = 32;
+
+	/**
+	 * The mapper used to write the reports
+	 */
+	private static final ObjectMapper MAPPER = JacksonUtils.newMapper();
+
+	private final LongAdder[] phaseTimes = newAdders(Phase.values().length);
+	private final LongAdder[] phaseCalls = newAdders(Phase.values().length);
+	private final LongAdder[] counters = newAdders(Counter.values().length);
+	private final AtomicLongArray fileLatencies = new AtomicLongArray(LATENCY_BUCKETS);
+	private final LongAdder fileTime = new LongAdder();
+	private final AtomicLong maxFileTime = new AtomicLong();
+
+	/**
+	 * The number of times each reference (its canonical URI) could not be resolved
+	 */
+	private final ConcurrentHashMap<String, LongAdder> unresolvedReferences = new ConcurrentHashMap<>();
+
+	private final List<MetricsListener> listeners = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Adds a listener to be notified as the metrics are recorded
+	 *
+	 * @param listener The listener
+	 */
+	public void addListener(MetricsListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Removes a listener
+	 *
+	 * @param listener The listener
+	 */
+	public void removeListener(MetricsListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Returns the time spent in a phase
+	 *
+	 * @param phase The phase
+	 * @return The time in nanoseconds
+	 */
+	public long getTime(Phase phase) {
+		return phaseTimes[phase.ordinal()].sum();
+	}
+
+	/**
+	 * Returns the number of times a phase was run
+	 *
+	 * @param phase The phase
+	 * @return The number of times
+	 */
+	public long getCalls(Phase phase) {
+		return phaseCalls[phase.ordinal()].sum();
+	}
+
+	/**
+	 * Returns the value of a counter
+	 *
+	 * @param counter The counter
+	 * @return The value
+	 */
+	public long getCount(Counter counter) {
+		return counters[counter.ordinal()].sum();
+	}
+
+	/**
+	 * Returns the references which could not be resolved
+	 *
+	 * @return The number of times each reference (its canonical URI) could not be resolved, sorted by reference
+	 */
+	public Map<String, Long> getUnresolvedReferences() {
+		Map<String, Long> result = new TreeMap<>();
+		for(Entry<String, LongAdder> entry : unresolvedReferences.entrySet())
+			result.put(entry.getKey(), entry.getValue().sum());
+		return result;
+	}
+
+	/**
+	 * Returns the histogram of the time spent analyzing each file
+	 *
+	 * @return The number of files per bucket (the bucket i counts the files analyzed in less than 2^i microseconds)
+	 */
+	public long[] getFileLatencies() {
+		long[] result = new long[LATENCY_BUCKETS];
+		for(int i = 0; i < LATENCY_BUCKETS; i++)
+			result[i] = fileLatencies.get(i);
+		return result;
+	}
+
+	/**
+	 * Returns an upper bound of a percentile of the time spent analyzing each file
+	 *
+	 * @param percentile The percentile (between 0 and 100)
+	 * @return The upper bound of the bucket of the histogram including the percentile (in nanoseconds), 0 if no file was analyzed
+	 */
+	public long getFileLatencyPercentile(double percentile) {
+		long[] latencies = getFileLatencies();
+		long total = 0;
+		for(long count : latencies)
+			total += count;
+		if(total == 0)
+			return 0;
+		long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+		long seen = 0;
+		for(int i = 0; i < LATENCY_BUCKETS - 1; i++) {
+			seen += latencies[i];
+			if(seen >= rank)
+				return Math.min((1L << i) * 1000, maxFileTime.get());
+		}
+		return maxFileTime.get();
+	}
+
+	/**
+	 * Clears the metrics (listeners are kept)
+	 */
+	public void reset() {
+		for(LongAdder adder : phaseTimes)
+			adder.reset();
+		for(LongAdder adder : phaseCalls)
+			adder.reset();
+		for(LongAdder adder : counters)
+			adder.reset();
+		for(int i = 0; i < LATENCY_BUCKETS; i++)
+			fileLatencies.set(i, 0);
+		fileTime.reset();
+		maxFileTime.set(0);
+		unresolvedReferences.clear();
+	}
+
+	/**
+	 * Returns the report of the metrics as a JSON object. Times are given in milliseconds.
+	 *
+	 * @return The report
+	 */
+	public ObjectNode toJSON() {
+		ObjectNode report = MAPPER.createObjectNode();
+		ObjectNode phasesNode = report.putObject("phases");
+		for(Phase phase : Phase.values()) {
+			ObjectNode phaseNode = phasesNode.putObject(camelCase(phase.name()));
+			phaseNode.put("calls", getCalls(phase));
+			phaseNode.put("time", millis(getTime(phase)));
+		}
+		ObjectNode countersNode = report.putObject("counters");
+		for(Counter counter : Counter.values())
+			countersNode.put(camelCase(counter.name()), getCount(counter));
+		ObjectNode unresolvedNode = report.putObject("unresolvedReferences");
+		for(Entry<String, Long> entry : getUnresolvedReferences().entrySet())
+			unresolvedNode.put(entry.getKey(), entry.getValue());
+
+		ObjectNode filesNode = report.putObject("fileLatency");
+		long[] latencies = getFileLatencies();
+		long files = 0;
+		for(long count : latencies)
+			files += count;
+		filesNode.put("count", files);
+		filesNode.put("total", millis(fileTime.sum()));
+		filesNode.put("mean", files == 0 ? 0 : millis(fileTime.sum() / files));
+		filesNode.put("max", millis(maxFileTime.get()));
+		filesNode.put("p50", millis(getFileLatencyPercentile(50)));
+		filesNode.put("p90", millis(getFileLatencyPercentile(90)));
+		filesNode.put("p99", millis(getFileLatencyPercentile(99)));
+		ArrayNode bucketsNode = filesNode.putArray("histogram");
+		for(int i = 0; i < LATENCY_BUCKETS; i++) {
+			if(latencies[i] > 0) {
+				ObjectNode bucketNode = bucketsNode.addObject();
+				if(i < LATENCY_BUCKETS - 1)
+					bucketNode.put("lessThan", millis((1L << i) * 1000));
+				bucketNode.put("count", latencies[i]);
+			}
+		}
+		return report;
+	}
+
+	/**
+	 * Writes the report of the metrics (see {@link #toJSON()})
+	 *
+	 * @param file The file where the report is written
+	 * @throws IOException
+	 */
+	public void writeReport(File file) throws IOException {
+		File folder = file.getAbsoluteFile().getParentFile();
+		if(folder != null && !folder.isDirectory() && !folder.mkdirs())
+			throw new IOException("Unable to create the folder " + folder.getAbsolutePath());
+		MAPPER.writerWithDefaultPrettyPrinter().writeValue(file, toJSON());
+	}
+
+	/**
+	 * Records the time spent in a phase
+	 *
+	 * @param phase The phase
+	 * @param nanos The time in nanoseconds
+	 */
+	void record(Phase phase, long nanos) {
+		phaseTimes[phase.ordinal()].add(nanos);
+		phaseCalls[phase.ordinal()].increment();
+		for(MetricsListener listener : listeners)
+			listener.phaseCompleted(phase, nanos);
+	}
+
+	/**
+	 * Increments a counter
+	 *
+	 * @param counter The counter
+	 * @param amount The amount to add
+	 */
+	void increment(Counter counter, long amount) {
+		counters[counter.ordinal()].add(amount);
+	}
+
+	/**
+	 * Counts the elements added to the model (classes, enumerations, associations and the constraints of the classes)
+	 *
+	 * @param elements The elements added
+	 */
+	void count(Collection<? extends PackageableElement> elements) {
+		long classes = 0, enumerations = 0, associations = 0, constraints = 0;
+		for(PackageableElement element : elements) {
+			if(element instanceof Class) {
+				classes++;
+				constraints += ((Class) element).getOwnedRules().size();
+			} else if(element instanceof Enumeration) {
+				enumerations++;
+			} else if(element instanceof Association) {
+				associations++;
+			}
+		}
+		increment(Counter.CLASSES, classes);
+		increment(Counter.ENUMERATIONS, enumerations);
+		increment(Counter.ASSOCIATIONS, associations);
+		increment(Counter.CONSTRAINTS, constraints);
+	}
+
+	/**
+	 * Records a reference which could not be resolved
+	 *
+	 * @param target The canonical URI of the reference
+	 */
+	void unresolved(String target) {
+		increment(Counter.UNRESOLVED_REFERENCES, 1);
+		unresolvedReferences.computeIfAbsent(target, key -> new LongAdder()).increment();
+	}
+
+	/**
+	 * Records the analysis of a file
+	 *
+	 * @param file The file
+	 * @param nanos The time spent (in nanoseconds)
+	 * @param valid False if the file was skipped
+	 */
+	void fileAnalyzed(File file, long nanos, boolean valid) {
+		increment(Counter.FILES, 1);
+		if(!valid)
+			increment(Counter.INVALID_FILES, 1);
+		fileTime.add(nanos);
+		maxFileTime.accumulateAndGet(nanos, Math::max);
+		long micros = nanos / 1000;
+		int bucket = (micros == 0) ? 0 : 64 - Long.numberOfLeadingZeros(micros);
+		fileLatencies.incrementAndGet(Math.min(bucket, LATENCY_BUCKETS - 1));
+		for(MetricsListener listener : listeners)
+			listener.fileAnalyzed(file, nanos, valid);
+	}
+
+	/**
+	 * Notifies the end of a launch to the listeners
+	 */
+	void launchCompleted() {
+		for(MetricsListener listener : listeners)
+			listener.launchCompleted(this);
+	}
+
+	private static LongAdder[] newAdders(int size) {
+		LongAdder[] adders = new LongAdder[size];
+		for(int i = 0; i < size; i++)
+			adders[i] = new LongAdder();
+		return adders;
+	}
+
+	private static double millis(long nanos) {
+		return nanos / 1000000.0;
+	}
+
+	/**
+	 * Converts the name of a constant into the name used in the report (e.g., RESOLVE_ASSOCIATIONS into resolveAssociations)
+	 */
+	private static String camelCase(String constant) {
+		StringBuilder name = new StringBuilder();
+		for(String word : constant.toLowerCase(Locale.ROOT).split("_"))
+			name.append(name.length() == 0 ? word : Character.toUpperCase(word.charAt(0)) + word.substring(1));
+		return name.toString();
+	}
+}
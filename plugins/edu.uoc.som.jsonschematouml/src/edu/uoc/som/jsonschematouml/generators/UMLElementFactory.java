@@ -0,0 +1,135 @@
+package edu.uoc.som.jsonschematouml.generators;
+
+import org.eclipse.uml2.uml.AggregationKind;
+import org.eclipse.uml2.uml.Association;
+import org.eclipse.uml2.uml.Class;
+import org.eclipse.uml2.uml.Package;
+import org.eclipse.uml2.uml.Property;
+import org.eclipse.uml2.uml.Type;
+import org.eclipse.uml2.uml.UMLFactory;
+
+/**
+ * Creates the classes, attributes and associations of a model as the operations of UML2 do (e.g.,
+ * {@link Package#createOwnedClass(String, boolean)}), which is checked by the tests.
+ *
+ * Types and associations are added to the packaged elements of the package directly: the operations of UML2 add
+ * them through the derived list of owned types, which is traversed on each addition, so creating N types would
+ * take quadratic time.
+ */
+public class UMLElementFactory {
+	/**
+	 * Adds a new type to a package
+	 * @param owner The package
+	 * @param type The type
+	 * @param name The name of the type
+	 * @return The type
+	 */
+	public <T extends Type> T createType(Package owner, T type, String name) {
+		owner.getPackagedElements().add(type);
+		type.setName(name);
+		return type;
+	}
+
+	/**
+	 * Creates a (non abstract) class in a package, as {@link Package#createOwnedClass(String, boolean)} does
+	 * @param owner The package
+	 * @param name The name of the class
+	 * @return The class
+	 */
+	public Class createClass(Package owner, String name) {
+		Class created = createType(owner, UMLFactory.eINSTANCE.createClass(), name);
+		created.setIsAbstract(false);
+		return created;
+	}
+
+	/**
+	 * Creates an attribute of a class, as {@link Class#createOwnedAttribute(String, Type)} does
+	 * @param concept The class
+	 * @param name The name of the attribute
+	 * @param type The type of the attribute
+	 * @return The attribute
+	 */
+	public Property createAttribute(Class concept, String name, Type type) {
+		Property attribute = UMLFactory.eINSTANCE.createProperty();
+		concept.getOwnedAttributes().add(attribute);
+		attribute.setName(name);
+		attribute.setType(type);
+		return attribute;
+	}
+
+	/**
+	 * Creates an association from a class to another one, as {@link Class#createAssociation(boolean, AggregationKind, String, int, int, Type, boolean, AggregationKind, String, int, int)}
+	 * does: the first end is typed by the other class (and owned by the class if it is navigable) and the second one by the class.
+	 * The association is added to the nearest package of the class
+	 * @param type The class
+	 * @param end1IsNavigable Whether the first end is navigable
+	 * @param end1Aggregation The aggregation of the first end
+	 * @param end1Name The name of the first end
+	 * @param end1Lower The lower bound of the first end
+	 * @param end1Upper The upper bound of the first end
+	 * @param end1Type The other class
+	 * @param end2IsNavigable Whether the second end is navigable
+	 * @param end2Aggregation The aggregation of the second end
+	 * @param end2Name The name of the second end
+	 * @param end2Lower The lower bound of the second end
+	 * @param end2Upper The upper bound of the second end
+	 * @return The association
+	 * @throws IllegalArgumentException If the other class is null or the bounds are not valid
+	 * @throws IllegalStateException If the class is not in a package
+	 */
+	public Association createAssociation(Class type, boolean end1IsNavigable, AggregationKind end1Aggregation, String end1Name, int end1Lower, int end1Upper, Class end1Type,
+			boolean end2IsNavigable, AggregationKind end2Aggregation, String end2Name, int end2Lower, int end2Upper) {
+		validateBounds(end1Type, end1Lower, end1Upper);
+		validateBounds(type, end2Lower, end2Upper);
+		Package nearestPackage = type.getNearestPackage();
+		if(nearestPackage == null)
+			throw new IllegalStateException();
+		Association association = UMLFactory.eINSTANCE.createAssociation();
+		nearestPackage.getPackagedElements().add(association);
+		createAssociationEnd(type, association, end1IsNavigable, end1Aggregation, end1Name, end1Lower, end1Upper, end1Type);
+		createAssociationEnd(end1Type, association, end2IsNavigable, end2Aggregation, end2Name, end2Lower, end2Upper, type);
+		return association;
+	}
+
+	/**
+	 * Creates an end of an association (see {@link #createAssociation(Class, boolean, AggregationKind, String, int, int, Class, boolean, AggregationKind, String, int, int)})
+	 * @param type The class at the other end
+	 * @param association The association
+	 * @param isNavigable Whether the end is navigable (then it is owned by the class at the other end)
+	 * @param aggregation The aggregation of the end
+	 * @param name The name of the end
+	 * @param lower The lower bound of the end
+	 * @param upper The upper bound of the end
+	 * @param endType The type of the end
+	 */
+	private void createAssociationEnd(Class type, Association association, boolean isNavigable, AggregationKind aggregation, String name, int lower, int upper, Class endType) {
+		Property end = UMLFactory.eINSTANCE.createProperty();
+		if(isNavigable)
+			type.getOwnedAttributes().add(end);
+		else
+			association.getOwnedEnds().add(end);
+		end.setName(name);
+		end.setType(endType);
+		end.setLower(lower);
+		end.setUpper(upper);
+		end.setAggregation(aggregation);
+		if(isNavigable)
+			association.getMemberEnds().add(end);
+	}
+
+	/**
+	 * Checks the type and bounds of an association end, as UML2 does
+	 * @param type The type of the end
+	 * @param lower The lower bound
+	 * @param upper The upper bound
+	 * @throws IllegalArgumentException If there is no type or the bounds are not valid
+	 */
+	private static void validateBounds(Type type, int lower, int upper) {
+		if(type == null)
+			throw new IllegalArgumentException(String.valueOf(type));
+		if(lower < 0)
+			throw new IllegalArgumentException(String.valueOf(lower));
+		if(upper != -1 && (upper == 0 || upper < lower))
+			throw new IllegalArgumentException(String.valueOf(upper));
+	}
+}
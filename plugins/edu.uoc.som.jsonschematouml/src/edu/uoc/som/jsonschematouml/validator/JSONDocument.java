@@ -0,0 +1,237 @@
+package edu.uoc.som.jsonschematouml.validator;
+
+import java.io.CharArrayReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ContainerNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.fge.jackson.JacksonUtils;
+
+/**
+ * The contents of a JSON file, read at once so that the same bytes are used to compute the digest of
+ * the file (see {@link ValidationCache}) and to parse the tree which is validated and transformed.
+ *
+ * Files are read with NIO in bulk into a heap buffer of their size. They are not memory-mapped, as a mapping keeps
+ * the file locked (e.g., on Windows) until it is garbage collected, so the file is closed as soon as it is read and it
+ * can be modified or deleted while the document is used. Contents are
+ * decoded as UTF-8 (the encoding of JSON, cf. Section 8.1 - RFC 8259): a leading byte order mark is skipped and malformed
+ * input is reported as an error.
+ *
+ * Trees are built without recursion (see {@link #readTree(JsonParser)}), so deeply nested documents can be parsed.
+ */
+public class JSONDocument {
+	/**
+	 * The byte order mark, as encoded in UTF-8
+	 */
+	private static final byte[] BYTE_ORDER_MARK = { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF };
+
+	/**
+	 * The mapper used to parse the documents (configured as the one of the validator)
+	 */
+	private static final ObjectMapper MAPPER = JacksonUtils.newMapper();
+
+	/**
+	 * The contents of the file
+	 */
+	private final ByteBuffer contents;
+
+	/**
+	 * The digest of the contents (computed on demand)
+	 */
+	private String digest;
+
+	private JSONDocument(ByteBuffer contents) {
+		this.contents = contents;
+	}
+
+	/**
+	 * Reads a file
+	 *
+	 * @param file The file to read
+	 * @return The document
+	 * @throws IOException If the file cannot be read or it is too large to be read at once (see {@link #newReader(File)})
+	 */
+	public static JSONDocument read(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			if(size > Integer.MAX_VALUE)
+				throw new IOException("The file " + file.getAbsolutePath() + " is too large to be read at once");
+			ByteBuffer contents = ByteBuffer.allocate((int) size);
+			while(contents.hasRemaining() && channel.read(contents) >= 0);
+			contents.flip();
+			return new JSONDocument(contents);
+		}
+	}
+
+	/**
+	 * Returns the digest of the contents of the document (see {@link ValidationCache#digest(ByteBuffer)})
+	 *
+	 * @return The digest (as an hexadecimal string)
+	 */
+	public String digest() {
+		if(digest == null)
+			digest = ValidationCache.digest(contents.duplicate());
+		return digest;
+	}
+
+	/**
+	 * Parses the contents of the document. As {@link com.github.fge.jackson.JsonLoader}, it fails if the document
+	 * is empty or there is anything after the root value.
+	 *
+	 * @return The root element of the document
+	 * @throws IOException If the contents are not UTF-8 or not valid JSON
+	 */
+	public JsonNode parse() throws IOException {
+		ByteBuffer bytes = contents.duplicate();
+		if(startsWithByteOrderMark(bytes))
+			bytes.position(bytes.position() + BYTE_ORDER_MARK.length);
+		CharBuffer chars = newDecoder().decode(bytes);
+		try (JsonParser parser = MAPPER.getFactory().createParser(new CharArrayReader(chars.array(), chars.arrayOffset() + chars.position(), chars.remaining()))) {
+			JsonNode root = readTree(parser);
+			if(root == null)
+				throw new JsonParseException("No JSON value found", parser.getCurrentLocation());
+			if(parser.nextToken() != null)
+				throw new JsonParseException("Content found after the JSON value", parser.getCurrentLocation());
+			return root;
+		}
+	}
+
+	/**
+	 * Reads a JSON value into a tree, as {@link ObjectMapper#readTree(JsonParser)} does with the mapper of the validator
+	 * (i.e., floating-point numbers are read as {@link java.math.BigDecimal}). The containers being read are kept in
+	 * an explicit stack instead of the call stack, so the depth of the value is not limited by the size of the stack.
+	 *
+	 * @param parser The parser, positioned at the first token of the value (or before it)
+	 * @return The value (null if there is no value left)
+	 * @throws IOException If the value is not valid JSON
+	 */
+	public static JsonNode readTree(JsonParser parser) throws IOException {
+		JsonToken token = parser.getCurrentToken();
+		if(token == null && (token = parser.nextToken()) == null)
+			return null;
+		JsonNodeFactory factory = MAPPER.getNodeFactory();
+		ArrayDeque<ContainerNode<?>> containers = new ArrayDeque<>();
+		JsonNode root = null;
+		String fieldName = null;
+		for(; ; token = parser.nextToken()) {
+			if(token == null)
+				throw new JsonParseException("Unexpected end of input", parser.getCurrentLocation());
+			JsonNode value;
+			switch(token) {
+			case FIELD_NAME:
+				fieldName = parser.getCurrentName();
+				continue;
+			case END_OBJECT:
+			case END_ARRAY:
+				containers.pop();
+				if(containers.isEmpty())
+					return root;
+				continue;
+			case START_OBJECT:
+				value = factory.objectNode();
+				break;
+			case START_ARRAY:
+				value = factory.arrayNode();
+				break;
+			case VALUE_STRING:
+				value = factory.textNode(parser.getText());
+				break;
+			case VALUE_NUMBER_INT:
+				switch(parser.getNumberType()) {
+				case INT:
+					value = factory.numberNode(parser.getIntValue());
+					break;
+				case LONG:
+					value = factory.numberNode(parser.getLongValue());
+					break;
+				default:
+					value = factory.numberNode(parser.getBigIntegerValue());
+				}
+				break;
+			case VALUE_NUMBER_FLOAT:
+				value = factory.numberNode(parser.getDecimalValue());
+				break;
+			case VALUE_TRUE:
+				value = factory.booleanNode(true);
+				break;
+			case VALUE_FALSE:
+				value = factory.booleanNode(false);
+				break;
+			case VALUE_NULL:
+				value = factory.nullNode();
+				break;
+			case VALUE_EMBEDDED_OBJECT:
+				value = factory.pojoNode(parser.getEmbeddedObject());
+				break;
+			default:
+				throw new JsonParseException("Unexpected token " + token, parser.getCurrentLocation());
+			}
+			ContainerNode<?> parent = containers.peek();
+			if(parent == null)
+				root = value;
+			else if(parent.isObject())
+				((ObjectNode) parent).set(fieldName, value);
+			else
+				((ArrayNode) parent).add(value);
+			if(value.isContainerNode())
+				containers.push((ContainerNode<?>) value);
+			else if(parent == null)
+				return root;
+		}
+	}
+
+	/**
+	 * Opens a reader to read a file incrementally (e.g., for files too large to be read at once), decoding
+	 * it as the documents are decoded (see {@link JSONDocument})
+	 *
+	 * @param file The file to read
+	 * @return The reader (to be closed by the caller)
+	 * @throws IOException
+	 */
+	public static Reader newReader(File file) throws IOException {
+		PushbackReader reader = new PushbackReader(Channels.newReader(FileChannel.open(file.toPath(), StandardOpenOption.READ), newDecoder(), -1));
+		try {
+			int first = reader.read();
+			if(first != -1 && first != '\uFEFF')
+				reader.unread(first);
+		} catch (IOException e) {
+			reader.close();
+			throw e;
+		}
+		return reader;
+	}
+
+	private static CharsetDecoder newDecoder() {
+		return StandardCharsets.UTF_8.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPORT)
+				.onUnmappableCharacter(CodingErrorAction.REPORT);
+	}
+
+	private static boolean startsWithByteOrderMark(ByteBuffer bytes) {
+		if(bytes.remaining() < BYTE_ORDER_MARK.length)
+			return false;
+		for(int i = 0; i < BYTE_ORDER_MARK.length; i++)
+			if(bytes.get(bytes.position() + i) != BYTE_ORDER_MARK[i])
+				return false;
+		return true;
+	}
+}
@@ -4,7 +4,6 @@ import java.io.File;
 import java.io.IOException;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.github.fge.jackson.JsonLoader;
 import com.github.fge.jsonschema.cfg.ValidationConfiguration;
 import com.github.fge.jsonschema.core.exceptions.ProcessingException;
 import com.github.fge.jsonschema.core.report.ProcessingReport;
@@ -20,9 +19,12 @@ import com.github.fge.jsonschema.processors.syntax.SyntaxValidator;
  */
 public class JSONSchemaValidator {
 	/**
-	 * The Validator used to check that a JSON Schema is valid
+	 * Holds the Validator used to check that a JSON Schema is valid. It is only created when the first
+	 * document is validated (i.e., not when all the results come from a {@link ValidationCache})
 	 */
-	private static final SyntaxValidator VALIDATOR = new SyntaxValidator(ValidationConfiguration.byDefault());
+	private static class ValidatorHolder {
+		private static final SyntaxValidator VALIDATOR = new SyntaxValidator(ValidationConfiguration.byDefault());
+	}
 	
 	/**
 	 * Validates that a jsonFile conforms to the JSON Schema specification
@@ -33,7 +35,62 @@ public class JSONSchemaValidator {
 	 * @throws IOException
 	 */
 	public static ProcessingReport validate(File jsonFile) throws ProcessingException, IOException {
-		JsonNode jsonNode = JsonLoader.fromFile(jsonFile);
-		return VALIDATOR.validateSchema(jsonNode);
+		JsonNode jsonNode = JSONDocument.read(jsonFile).parse();
+		return validate(jsonNode);
+	}
+
+	/**
+	 * Validates that an already loaded JSON document conforms to the JSON Schema specification.
+	 * This method should be used when the JSON tree is going to be reused afterwards (i.e., to
+	 * avoid reading and parsing the file twice)
+	 * 
+	 * @param jsonNode The root element of the JSON document to validate
+	 * @return The report of the validation
+	 * @throws ProcessingException
+	 */
+	public static ProcessingReport validate(JsonNode jsonNode) throws ProcessingException {
+		return ValidatorHolder.VALIDATOR.validateSchema(jsonNode);
+	}
+
+	/**
+	 * Checks an already loaded JSON document with a given level of validation
+	 * 
+	 * @param jsonNode The root element of the JSON document to validate
+	 * @param level The level of validation
+	 * @return True if the document is a valid JSON Schema (according to the level)
+	 * @throws ProcessingException
+	 */
+	public static boolean isValid(JsonNode jsonNode, ValidationLevel level) throws ProcessingException {
+		switch(level) {
+		case NONE:
+			return true;
+		case STRUCTURAL:
+			return StructuralValidator.check(jsonNode);
+		default:
+			return validate(jsonNode).isSuccess();
+		}
+	}
+
+	/**
+	 * Checks an already loaded JSON document with a given level of validation. For the {@link ValidationLevel#FULL}
+	 * level, the result is looked up in the cache first, so documents already validated (i.e., with the same digest) 
+	 * are not validated again.
+	 * 
+	 * @param jsonNode The root element of the JSON document to validate
+	 * @param level The level of validation
+	 * @param digest The digest of the contents of the document (see {@link ValidationCache#digest(byte[])})
+	 * @param cache The cache of the results of the validation (if null, the document is always validated)
+	 * @return True if the document is a valid JSON Schema (according to the level)
+	 * @throws ProcessingException
+	 */
+	public static boolean isValid(JsonNode jsonNode, ValidationLevel level, String digest, ValidationCache cache) throws ProcessingException {
+		if(level != ValidationLevel.FULL || cache == null || digest == null)
+			return isValid(jsonNode, level);
+		Boolean valid = cache.get(digest);
+		if(valid == null) {
+			valid = validate(jsonNode).isSuccess();
+			cache.put(digest, valid);
+		}
+		return valid;
 	}
 }
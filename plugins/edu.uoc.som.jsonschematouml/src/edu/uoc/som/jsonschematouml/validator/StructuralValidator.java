@@ -0,0 +1,129 @@
+package edu.uoc.som.jsonschematouml.validator;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map.Entry;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Checks the structure of the keywords of a JSON Schema which are used by the transformation
+ * (see {@link ValidationLevel#STRUCTURAL}).
+ *
+ * The schema is traversed only once, with an explicit stack (so deeply nested schemas do not overflow
+ * the call stack): the members of each schema element are visited and their values are checked according
+ * to the keyword. Subschemas (in "properties", "items", "allOf", "oneOf", "anyOf" and "definitions") are
+ * pushed to be checked afterwards. Unknown keywords are ignored.
+ */
+class StructuralValidator {
+
+	/**
+	 * Checks a JSON Schema
+	 *
+	 * @param schema The root element of the schema
+	 * @return True if the keywords used by the transformation are well-formed
+	 */
+	static boolean check(JsonNode schema) {
+		ArrayDeque<JsonNode> pending = new ArrayDeque<>();
+		pending.push(schema);
+		while(!pending.isEmpty()) {
+			JsonNode element = pending.pop();
+			if(!element.isObject())
+				return false;
+			for(Iterator<Entry<String, JsonNode>> it = element.fields(); it.hasNext(); ) {
+				Entry<String, JsonNode> entry = it.next();
+				JsonNode value = entry.getValue();
+				switch(entry.getKey()) {
+				case "type":
+					// Section 5.5.2 in json-schema-validation
+					if(value.isArray()) {
+						if(value.size() == 0)
+							return false;
+						for(JsonNode type : value)
+							if(!type.isTextual())
+								return false;
+					} else if(!value.isTextual())
+						return false;
+					break;
+				case "properties":
+				case "definitions":
+					// Sections 5.4.4 and 5.5.7 in json-schema-validation
+					if(!value.isObject())
+						return false;
+					for(JsonNode subschema : value)
+						pending.push(subschema);
+					break;
+				case "items":
+					// Section 5.3.1 in json-schema-validation
+					if(value.isArray()) {
+						for(JsonNode subschema : value)
+							pending.push(subschema);
+					} else
+						pending.push(value);
+					break;
+				case "allOf":
+				case "anyOf":
+				case "oneOf":
+					// Sections 5.5.3, 5.5.4 and 5.5.5 in json-schema-validation
+					if(!value.isArray() || value.size() == 0)
+						return false;
+					for(JsonNode subschema : value)
+						pending.push(subschema);
+					break;
+				case "enum":
+					// Section 5.5.1 in json-schema-validation
+					if(!value.isArray() || value.size() == 0)
+						return false;
+					break;
+				case "required":
+					// Section 5.4.3 in json-schema-validation
+					if(!value.isArray())
+						return false;
+					for(JsonNode required : value)
+						if(!required.isTextual())
+							return false;
+					break;
+				case "$ref":
+				case "id":
+				case "$id":
+				case "$schema":
+				case "title":
+				case "description":
+				case "format":
+				case "pattern":
+					if(!value.isTextual())
+						return false;
+					break;
+				case "multipleOf":
+					// Section 5.1.1 in json-schema-validation
+					if(!value.isNumber() || value.decimalValue().signum() <= 0)
+						return false;
+					break;
+				case "maximum":
+				case "minimum":
+					// Sections 5.1.2 and 5.1.3 in json-schema-validation
+					if(!value.isNumber())
+						return false;
+					break;
+				case "exclusiveMaximum":
+				case "exclusiveMinimum":
+					// A boolean in draft 4, a number since draft 6
+					if(!value.isBoolean() && !value.isNumber())
+						return false;
+					break;
+				case "maxLength":
+				case "minLength":
+				case "maxItems":
+				case "minItems":
+					// Sections 5.2.1, 5.2.2, 5.3.2 and 5.3.3 in json-schema-validation
+					if(!value.canConvertToInt() || !value.isIntegralNumber() || value.intValue() < 0)
+						return false;
+					break;
+				default:
+					break;
+				}
+			}
+		}
+		return true;
+	}
+}
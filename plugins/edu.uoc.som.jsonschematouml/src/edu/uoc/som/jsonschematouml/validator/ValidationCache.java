@@ -0,0 +1,239 @@
+package edu.uoc.som.jsonschematouml.validator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.fge.jackson.JacksonUtils;
+
+/**
+ * Persistent cache of the results of {@link JSONSchemaValidator}, keyed by the digest of the contents
+ * of the validated files. The results are kept in a single JSON file, loaded when the cache is created
+ * and written back with {@link #save()}.
+ *
+ * The cache holds up to a maximum number of entries. When it is full, the least recently used entry is
+ * evicted. Entries created with a different version of the cache (or of the validator) are ignored.
+ *
+ * The methods of this class can be called concurrently.
+ */
+public class ValidationCache {
+	/**
+	 * The version of the format of the cache, including the version of the validator used to get the results
+	 */
+	private static final String VERSION = "1/json-schema-validator-2.2.6";
+
+	/**
+	 * The default maximum number of entries
+	 */
+	public static final int DEFAULT_MAX_ENTRIES = 100000;
+
+	/**
+	 * The mapper used to read/write the cache file
+	 */
+	private static final ObjectMapper MAPPER = JacksonUtils.newMapper();
+
+	/**
+	 * The file where the cache is stored
+	 */
+	private File file;
+
+	/**
+	 * The results of the validation, kept in access order (i.e., the first one is the least recently used)
+	 */
+	private LinkedHashMap<String, Boolean> entries;
+
+	/**
+	 * Whether the entries have changed since they were loaded/saved
+	 */
+	private boolean modified = false;
+
+	/**
+	 * The digest of the most recently used entry (i.e., the last one of the entries)
+	 */
+	private String lastAccessed;
+
+	/**
+	 * Creates a cache with the default maximum number of entries
+	 *
+	 * @param file The file where the cache is stored (it is read if it exists)
+	 */
+	public ValidationCache(File file) {
+		this(file, DEFAULT_MAX_ENTRIES);
+	}
+
+	/**
+	 * Creates a cache
+	 *
+	 * @param file The file where the cache is stored (it is read if it exists)
+	 * @param maxEntries The maximum number of entries
+	 */
+	public ValidationCache(File file, final int maxEntries) {
+		if(maxEntries < 1)
+			throw new IllegalArgumentException("The cache must hold at least one entry");
+		this.file = file;
+		this.entries = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+				return size() > maxEntries;
+			}
+		};
+		load();
+	}
+
+	/**
+	 * Returns the result of the validation of a file. A hit makes the entry the most recently used one, so the
+	 * cache is written by the next {@link #save()} if the order of the entries changes
+	 *
+	 * @param digest The digest of the contents of the file (see {@link #digest(byte[])})
+	 * @return True if the file is a valid JSON Schema, false if it is not, null if it is not in the cache
+	 */
+	public synchronized Boolean get(String digest) {
+		Boolean valid = entries.get(digest);
+		if(valid != null && !digest.equals(lastAccessed)) {
+			lastAccessed = digest;
+			modified = true;
+		}
+		return valid;
+	}
+
+	/**
+	 * Stores the result of the validation of a file
+	 *
+	 * @param digest The digest of the contents of the file (see {@link #digest(byte[])})
+	 * @param valid Whether the file is a valid JSON Schema
+	 */
+	public synchronized void put(String digest, boolean valid) {
+		Boolean previous = entries.put(digest, valid);
+		if(previous == null || previous != valid || !digest.equals(lastAccessed))
+			modified = true;
+		lastAccessed = digest;
+	}
+
+	/**
+	 * Returns the number of entries of the cache
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Writes the cache to its file (if it has changed). The entries are written in access order, so the
+	 * order of eviction is kept between runs.
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void save() throws IOException {
+		if(!modified)
+			return;
+		File folder = file.getAbsoluteFile().getParentFile();
+		if(folder != null && !folder.isDirectory() && !folder.mkdirs())
+			throw new IOException("Unable to create the folder " + folder.getAbsolutePath());
+		ObjectNode root = MAPPER.createObjectNode();
+		root.put("version", VERSION);
+		ObjectNode entriesNode = root.putObject("entries");
+		for(Entry<String, Boolean> entry : entries.entrySet())
+			entriesNode.put(entry.getKey(), entry.getValue());
+		File temporary = new File(file.getAbsolutePath() + ".tmp");
+		MAPPER.writeValue(temporary, root);
+		if(!temporary.renameTo(file)) {
+			file.delete();
+			if(!temporary.renameTo(file))
+				throw new IOException("Unable to write " + file.getAbsolutePath());
+		}
+		modified = false;
+	}
+
+	/**
+	 * Reads the entries from the file of the cache. A missing or unreadable file results in an empty cache
+	 */
+	private void load() {
+		if(!file.isFile())
+			return;
+		try {
+			JsonNode root = MAPPER.readTree(file);
+			if(!VERSION.equals(root.path("version").asText()))
+				return;
+			for(Iterator<Entry<String, JsonNode>> it = root.path("entries").fields(); it.hasNext(); ) {
+				Entry<String, JsonNode> entry = it.next();
+				entries.put(entry.getKey(), entry.getValue().asBoolean());
+				lastAccessed = entry.getKey();
+			}
+		} catch (IOException e) {
+			System.err.println("The validation cache " + file.getAbsolutePath() + " could not be read");
+			entries.clear();
+			lastAccessed = null;
+		}
+	}
+
+	/**
+	 * Computes the digest of the contents of a file
+	 *
+	 * @param contents The contents of the file
+	 * @return The digest (as an hexadecimal string)
+	 */
+	public static String digest(byte[] contents) {
+		return toHex(newMessageDigest().digest(contents));
+	}
+
+	/**
+	 * Computes the digest of the contents of a file (see {@link JSONDocument})
+	 *
+	 * @param contents The contents of the file (they are consumed)
+	 * @return The digest (as an hexadecimal string)
+	 */
+	public static String digest(ByteBuffer contents) {
+		MessageDigest messageDigest = newMessageDigest();
+		messageDigest.update(contents);
+		return toHex(messageDigest.digest());
+	}
+
+	/**
+	 * Computes the digest of the contents of a file, without loading the whole file in memory
+	 *
+	 * @param file The file
+	 * @return The digest (as an hexadecimal string)
+	 * @throws IOException
+	 */
+	public static String digest(File file) throws IOException {
+		MessageDigest messageDigest = newMessageDigest();
+		ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			while(channel.read(buffer) > 0) {
+				buffer.flip();
+				messageDigest.update(buffer);
+				buffer.clear();
+			}
+		}
+		return toHex(messageDigest.digest());
+	}
+
+	private static MessageDigest newMessageDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder result = new StringBuilder(bytes.length * 2);
+		for(byte b : bytes) {
+			result.append(Character.forDigit((b >> 4) & 0xF, 16));
+			result.append(Character.forDigit(b & 0xF, 16));
+		}
+		return result.toString();
+	}
+}
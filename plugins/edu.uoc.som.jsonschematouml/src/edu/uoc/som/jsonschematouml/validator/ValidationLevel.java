@@ -0,0 +1,22 @@
+package edu.uoc.som.jsonschematouml.validator;
+
+/**
+ * The level of validation applied to the JSON Schemas before transforming them 
+ * (see {@link JSONSchemaValidator#isValid(com.fasterxml.jackson.databind.JsonNode, ValidationLevel)})
+ */
+public enum ValidationLevel {
+	/**
+	 * Schemas are not validated. To be used when they were already validated upstream
+	 */
+	NONE,
+	/**
+	 * Only the structure of the keywords used by the transformation is checked (e.g., "properties" is an 
+	 * object of schemas, "required" is an array of strings, "maximum" is a number). It is much faster than
+	 * {@link #FULL}, but it does not check the rest of the keywords nor the "$schema" of the document
+	 */
+	STRUCTURAL,
+	/**
+	 * Schemas are validated against the JSON Schema specification
+	 */
+	FULL
+}